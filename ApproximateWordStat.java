@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Class that gives the same statistics as {@link WordStat} for inputs whose vocabulary is too large to keep, using a
+ * fixed amount of memory chosen up front. Counts come from a {@link CountMinSketch}, the most common words from a
+ * {@link SpaceSaving} summary and the number of distinct words from a {@link HyperLogLog} counter.
+ * <p>
+ * With a sketch of width w and depth d, a summary of capacity m, a counter of precision p and N words added:
+ * <ul>
+ *     <li>wordCount never underestimates, and overestimates by at most min(e N / w, N / m), the first bound holding
+ *     with probability 1 - e^-d</li>
+ *     <li>mostCommonWords always includes every word occurring more than N / m times</li>
+ *     <li>wordRank counts the monitored words above the word's estimated count, so it is exact for the most common
+ *     words and a lower bound beyond the m monitored words</li>
+ *     <li>distinctWords is off by about 1.04 / sqrt(2^p) of the true number</li>
+ * </ul>
+ * Memory is about 4 w d bytes for the sketch, 2^p bytes for the counter and m monitored words with a few ints apiece,
+ * whatever the size of the input
+ */
+public class ApproximateWordStat {
+
+    // Field that holds the sketch counting every word
+    private final CountMinSketch sketch;
+
+    // Field that holds the summary of the most common words
+    private final SpaceSaving heavyHitters;
+
+    // Field that holds the counter of distinct words
+    private final HyperLogLog distinct;
+
+    /**
+     * Constructor that creates empty statistics of a fixed size
+     * @param width number of counters per row of the sketch
+     * @param depth number of rows of the sketch
+     * @param capacity number of most common words monitored
+     * @param precision number of hash bits picking a register of the distinct counter, from 4 to 18
+     */
+    public ApproximateWordStat(int width, int depth, int capacity, int precision){
+        sketch = new CountMinSketch(width, depth);
+        heavyHitters = new SpaceSaving(capacity);
+        distinct = new HyperLogLog(precision);
+    }
+
+    /**
+     * Method that adds the words of a text file
+     * @param file File path of a txt file
+     * @throws IOException Thrown in the event that tokenizer cannot read the file
+     */
+    public void addFile(String file) throws IOException {
+        Tokenizer.tokenize(file, false, this::add);
+    }
+
+    /**
+     * Method that adds the words of an array of strings
+     * @param text Array of string to parse
+     */
+    public void addText(String[] text){
+        Tokenizer.tokenize(text, this::add);
+    }
+
+    /**
+     * Method that adds the words of a stream of characters
+     * @param reader stream of characters, left open
+     * @throws IOException Thrown in the event that the stream cannot be read
+     */
+    public void addStream(Reader reader) throws IOException {
+        Tokenizer.tokenize(reader, this::add);
+    }
+
+    /**
+     * Method that returns an estimate of the number of times the word is used, never below the true number
+     * @param word the word to be searched for
+     * @return int estimated # of times the word occurs
+     */
+    public int wordCount(String word){
+        // Both structures overestimate, so the smaller answer is the closer one
+        return Math.min(sketch.estimate(hash(word)), heavyHitters.count(word));
+    }
+
+    /**
+     * Method that returns an estimate of the "rank" of the word in terms of how often it occurs. Unlike WordStat a word
+     * that never occurs is not an error, since collisions in the sketch make it indistinguishable from a rare word
+     * @param word the word to find the "rank" of
+     * @return the word's estimated "rank"
+     */
+    public int wordRank(String word){
+        // Counting the monitored words above the word's estimated count
+        return heavyHitters.countAbove(wordCount(word)) + 1;
+    }
+
+    /**
+     * Method that returns the k most common words among the monitored ones
+     * @param k number of words to return
+     * @return Array in descending order of the k most common words
+     */
+    public String[] mostCommonWords(int k){
+        // Checking to ensure parameter is valid
+        if(k < 0)
+            // If not throw exception
+            throw new IllegalArgumentException();
+        // If k is too large change to the number of monitored words
+        if(k > heavyHitters.size())
+            k = heavyHitters.size();
+        return heavyHitters.top(k);
+    }
+
+    /**
+     * Method that returns an estimate of the number of distinct words
+     * @return estimated # of distinct words
+     */
+    public int distinctWords(){
+        return (int) Math.min(distinct.estimate(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Method that returns the number of words added
+     * @return # of words
+     */
+    public long totalWords(){
+        return sketch.total();
+    }
+
+    /**
+     * Private helper that counts a word handed over by the tokenizer in every structure
+     * @param buffer buffer holding the word
+     * @param offset index of the first character of the word
+     * @param length number of characters in the word
+     */
+    private void add(char[] buffer, int offset, int length){
+        // Hashing the word once for both sketches
+        long hash = hash(buffer, offset, length);
+        sketch.add(hash);
+        distinct.add(hash);
+        heavyHitters.add(buffer, offset, length);
+    }
+
+    /**
+     * Private helper that returns the 64-bit hash of a word
+     * @param word given word
+     * @return hash
+     */
+    private static long hash(String word){
+        char[] chars = word.toCharArray();
+        return hash(chars, 0, chars.length);
+    }
+
+    /**
+     * Private helper that returns the 64-bit hash of a word given as a slice of a character buffer: FNV-1a over its
+     * characters, then a final mix so that every output bit depends on every input bit, which the sketches rely on
+     * @param buffer buffer holding the word
+     * @param offset index of the first character of the word
+     * @param length number of characters in the word
+     * @return hash
+     */
+    private static long hash(char[] buffer, int offset, int length){
+        long h = 0xCBF29CE484222325L;
+        for(int j = offset; j < offset + length; j++)
+            h = (h ^ buffer[j]) * 0x100000001B3L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85EC3L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -1,7 +1,22 @@
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -16,7 +31,7 @@ public class Assignment4Tester {
          I hope! this is. working correctly?
         My gramMar isn't ver\y good-
          */
-        Tokenizer t = new Tokenizer("/Users/maximilianschulten/IdeaProjects/Assignment 4/src/test.txt");
+        Tokenizer t = new Tokenizer("test.txt");
 
         // Creating a string of all words in our new word list thereby also texting the wordList() method
         StringBuilder s = new StringBuilder();
@@ -43,6 +58,40 @@ public class Assignment4Tester {
         }
 
         assertEquals("hellothisisatestihopethisisworkingcorrectlymygrammarisntverygood",s1.toString());
+
+        // The memory mapped mode must produce exactly the same word list
+        Tokenizer mapped = new Tokenizer("test.txt", true);
+        assertEquals(t.wordList(), mapped.wordList());
+
+        // Whatever the default charset, both modes and the byte ranges agree on multi-byte UTF-8 and malformed bytes:
+        // a broken sequence, a truncated one, a stray byte, an overlong slash, an encoded surrogate and an emoji
+        File encoded = File.createTempFile("utf8", ".txt");
+        try {
+            byte[] text = ("Caf\u00e9 na\u00efve \u00c9t\u00e9-\u4e2d\u6587 x").getBytes(StandardCharsets.UTF_8);
+            byte[] malformed = {(byte) 0xC3, '(', 'a', (byte) 0xE2, (byte) 0x82, 'b', ' ', (byte) 0xFF, 'c',
+                    (byte) 0xC0, (byte) 0xAF, 'd', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'e', (byte) 0xF0,
+                    (byte) 0x9F, (byte) 0x98, (byte) 0x80, 'f', ' ', 'g'};
+            byte[] bytes = Arrays.copyOf(text, text.length + malformed.length);
+            System.arraycopy(malformed, 0, bytes, text.length, malformed.length);
+            Files.write(encoded.toPath(), bytes);
+            Tokenizer read = new Tokenizer(encoded.getPath());
+            assertEquals(read.wordList(), new Tokenizer(encoded.getPath(), true).wordList());
+            ArrayList<String> ranged = new ArrayList<>();
+            long[] bounds = Tokenizer.boundaries(encoded.getPath(), 4);
+            for(int i = 0; i + 1 < bounds.length; i++)
+                ranged.addAll(new Tokenizer(encoded.getPath(), bounds[i], bounds[i + 1]).wordList());
+            assertEquals(read.wordList(), ranged);
+            assertTrue(read.wordList().size() > 8);
+        } finally {
+            encoded.delete();
+        }
+
+        // Streaming the file must produce the same words lazily
+        ArrayList<String> streamed = new ArrayList<>();
+        try (FileReader reader = new FileReader("test.txt")) {
+            Tokenizer.iterator(reader).forEachRemaining(streamed::add);
+        }
+        assertEquals(t.wordList(), streamed);
     }
 
     @Test
@@ -73,6 +122,12 @@ public class Assignment4Tester {
         // Checking that exception is appropriately thrown
         assertThrows(NoSuchElementException.class, () -> table.get("John"));
 
+        // Non-throwing lookups
+        assertEquals(25, table.getOrDefault("Alice", -1));
+        assertEquals(-1, table.getOrDefault("Bob", -1));
+        assertTrue(table.contains("Charlie"));
+        assertFalse(table.contains("John"));
+
         // Checking the rehash
         HashTable<Integer> overload = new HashTable<>(2);
 
@@ -85,11 +140,343 @@ public class Assignment4Tester {
         assertEquals(1, overload.get("John"));
         assertEquals(2, overload.size());
 
+        // Checking that occurrences survive rehashing, both at once and spread over later operations
+        HashTable<Integer> whole = new HashTable<>(2);
+        HashTable<Integer> incremental = new HashTable<>(2, true);
+        for(int i = 0; i < 1000; i++) {
+            whole.put("key" + i % 300, i);
+            incremental.put("key" + i % 300, i);
+        }
+        assertEquals(300, whole.size());
+        assertEquals(300, incremental.size());
+        assertEquals(4, whole.getNode("key0").getOccurrences());
+        assertEquals(4, incremental.getNode("key0").getOccurrences());
+        assertEquals(3, incremental.getNode("key299").getOccurrences());
+        assertEquals(0, incremental.remove("key0"));
+        assertThrows(NoSuchElementException.class, () -> incremental.get("key0"));
+
+        // Checking the metrics: one probe per lookup in a table without collisions, and a rehash at load factor 1, the
+        // seed being fixed so that the four keys land in four buckets
+        HashTable<Integer> measured = new HashTable<>(4, false, 0);
+        assertNull(measured.stats());
+        HashTableStats stats = measured.enableStats();
+        for(int i = 0; i < 4; i++)
+            measured.put("k" + i, i);
+        measured.get("k3");
+        assertEquals(4, stats.getPuts());
+        assertEquals(1, stats.getLookups());
+        assertEquals(1.0, stats.getAverageLookupProbes());
+        assertEquals(1, stats.getRehashes());
+        int[] chains = stats.getChainLengthHistogram();
+        int buckets = 0, keys = 0;
+        for(int length = 0; length < chains.length; length++) {
+            buckets += chains[length];
+            keys += length * chains[length];
+        }
+        assertEquals(8, buckets);
+        assertEquals(4, keys);
+        assertArrayEquals(new int[]{4, 4}, chains);
+
+        // With a seed putting two of the keys in one chain, looking up the second of them takes two probes
+        HashTable<Integer> chained = new HashTable<>(4, false, 3);
+        HashTableStats chainedStats = chained.enableStats();
+        for(int i = 0; i < 4; i++)
+            chained.put("k" + i, i);
+        chained.get("k3");
+        assertEquals(2.0, chainedStats.getAverageLookupProbes());
+        assertArrayEquals(new int[]{5, 2, 1}, chainedStats.getChainLengthHistogram());
+
+        // Keys built from "Aa" and "BB" all share one String.hashCode, which must not break or slow the table
+        HashTable<Integer> colliding = new HashTable<>(2);
+        ArrayList<String> collidingKeys = new ArrayList<>();
+        collidingKeys.add("");
+        for(int round = 0; round < 10; round++) {
+            ArrayList<String> longer = new ArrayList<>();
+            for(String key : collidingKeys) {
+                longer.add(key + "Aa");
+                longer.add(key + "BB");
+            }
+            collidingKeys = longer;
+        }
+        for(String key : collidingKeys)
+            colliding.put(key, key.length());
+        colliding.put(collidingKeys.get(7), 0);
+        assertEquals(1024, colliding.size());
+        assertEquals(2, colliding.getNode(collidingKeys.get(7)).getOccurrences());
+        for(String key : collidingKeys)
+            assertEquals(20, colliding.get(key));
+        for(int i = 0; i < 1000; i++)
+            colliding.remove(collidingKeys.get(i));
+        assertEquals(24, colliding.size());
+        String removed = collidingKeys.get(0);
+        assertThrows(NoSuchElementException.class, () -> colliding.get(removed));
+        assertEquals(20, colliding.get(collidingKeys.get(1023)));
+
+        // Walking the nodes: forEach, the iterator and a parallel stream each see every key exactly once, even with an
+        // incremental rehash in progress and with keys in tree bins
+        HashTable<Integer> walked = new HashTable<>(4, true);
+        for(int i = 0; i < 1000; i++)
+            walked.put(letters(i), i);
+        HashSet<String> seen = new HashSet<>();
+        long[] sum = new long[1];
+        walked.forEach(n -> {
+            assertTrue(seen.add(n.getKey()));
+            sum[0] += n.getElement();
+        });
+        assertEquals(1000, seen.size());
+        assertEquals(999 * 1000 / 2, sum[0]);
+        int iterated = 0;
+        for(HashTable.Node<Integer> n : walked) {
+            assertEquals(walked.get(n.getKey()), n.getElement());
+            iterated++;
+        }
+        assertEquals(1000, iterated);
+        assertEquals(1000, walked.stream(true).map(HashTable.Node::getKey).distinct().count());
+        assertEquals(1024, colliding.stream(true).count() + 1000);
+        assertFalse(new HashTable<Integer>().iterator().hasNext());
+    }
+
+    @Test
+    public void testConcurrentHashTable() throws InterruptedException {
+        // Writers put overlapping skewed keys and put then remove keys of their own, all at once
+        int threads = 4, puts = 20000;
+        ConcurrentHashTable<Integer> table = new ConcurrentHashTable<>(2, 4);
+        String[][] keys = new String[threads][puts];
+        HashMap<String, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        for(int t = 0; t < threads; t++) {
+            for(int i = 0; i < puts; i++) {
+                keys[t][i] = letters((int) Math.pow(random.nextInt(1 << 20), 0.75) % 3000);
+                expected.merge(keys[t][i], 1, Integer::sum);
+            }
+        }
+        Thread[] writers = new Thread[threads];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for(int t = 0; t < threads; t++) {
+            String[] own = keys[t];
+            String prefix = "own" + letters(t);
+            writers[t] = new Thread(() -> {
+                for(int i = 0; i < own.length; i++) {
+                    table.put(own[i], own[i].length());
+                    if(i % 10 == 0) {
+                        table.put(prefix + letters(i), i);
+                        if(table.remove(prefix + letters(i)) != i)
+                            failure.set(new AssertionError(prefix + letters(i)));
+                    }
+                }
+            });
+            writers[t].setUncaughtExceptionHandler((thread, e) -> failure.set(e));
+        }
+        for(Thread writer : writers)
+            writer.start();
+        for(Thread writer : writers)
+            writer.join();
+        assertNull(failure.get());
+
+        // Counts and size match a sequential count of the same keys
+        assertEquals(expected.size(), table.size());
+        for(Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), table.getNode(entry.getKey()).getOccurrences());
+            assertEquals(entry.getKey().length(), table.get(entry.getKey()));
+        }
+        assertThrows(NoSuchElementException.class, () -> table.get("own" + letters(0) + letters(0)));
+        assertThrows(NoSuchElementException.class, () -> table.remove("absent"));
+        assertEquals(expected.size(), table.size());
+
+        // A node handed out is a copy, unchanged by later puts
+        HashTable.Node<Integer> node = table.getNode(keys[0][0]);
+        table.put(keys[0][0], 0);
+        assertEquals(node.getOccurrences() + 1, table.getNode(keys[0][0]).getOccurrences());
+        for(String key : expected.keySet())
+            table.remove(key);
+        assertEquals(0, table.size());
+
+        // Keys sharing one String.hashCode are spread over the segments instead of all queueing on one lock
+        ConcurrentHashTable<Integer> spread = new ConcurrentHashTable<>(16, 4);
+        HashSet<Integer> used = new HashSet<>();
+        String[] colliding = {""};
+        for(int round = 0; round < 8; round++) {
+            String[] longer = new String[colliding.length * 2];
+            for(int i = 0; i < colliding.length; i++) {
+                longer[2 * i] = colliding[i] + "Aa";
+                longer[2 * i + 1] = colliding[i] + "BB";
+            }
+            colliding = longer;
+        }
+        for(String key : colliding) {
+            assertEquals(colliding[0].hashCode(), key.hashCode());
+            spread.put(key, 0);
+            used.add(spread.segment(key));
+        }
+        assertEquals(256, spread.size());
+        assertTrue(used.size() > 8);
+    }
+
+    @Test
+    public void testOpenHashTable() {
+        OpenHashTable table = new OpenHashTable(2);
+
+        // Add some keys to the table, one of them twice
+        table.put("Alice");
+        table.put("Bob");
+        table.put("Charlie");
+        table.put("Alice");
+
+        // Check occurrences and that duplicates are not counted as new keys
+        assertEquals(2, table.getOccurrences("Alice"));
+        assertEquals(1, table.getOccurrences("Bob"));
+        assertEquals(3, table.size());
+
+        // Check removal returns the occurrences and size is correct
+        assertEquals(1, table.remove("Bob"));
+        assertThrows(NoSuchElementException.class, () -> table.getOccurrences("Bob"));
+        assertThrows(NoSuchElementException.class, () -> table.remove("John"));
+        assertEquals(2, table.size());
+        assertEquals(-1, table.idOf("Bob"));
+        assertEquals(table.getId("Alice"), table.idOf("Alice"));
+        assertTrue(table.contains("Alice"));
+        assertFalse(table.contains("Bob"));
+
+        // Growing well past the initial capacity and removing half of the keys again
+        for(int i = 0; i < 1000; i++)
+            table.put("key" + i);
+        for(int i = 0; i < 1000; i += 2)
+            table.remove("key" + i);
+        for(int i = 1; i < 1000; i += 2)
+            assertEquals(1, table.getOccurrences("key" + i));
+        assertEquals(2, table.getOccurrences("Alice"));
+        assertEquals(502, table.size());
+
+        // The slots doubled from 4 to 2048, and every key is found after at least one compared slot
+        assertEquals(9, table.resizes());
+        int[] probes = table.probeLengthHistogram();
+        assertEquals(0, probes[0]);
+        assertTrue(probes[probes.length - 1] > 0);
+        assertEquals(502, Arrays.stream(probes).sum());
     }
 
     @Test
-    public void testWordStat() throws IOException {
-        WordStat ws = new WordStat("/Users/maximilianschulten/IdeaProjects/Assignment 4/src/wordstat.txt");
+    public void testOffHeapHashTable() {
+        OffHeapHashTable table = new OffHeapHashTable(2);
+
+        // Add some keys to the table, one of them twice and one outside ASCII
+        table.put("Alice");
+        table.put("Bob");
+        table.put("Zo\u00eb");
+        char[] buffer = " Alice ".toCharArray();
+        assertEquals(0, table.put(buffer, 1, 5));
+
+        // Check occurrences, ids and that duplicates are not counted as new keys
+        assertEquals(2, table.getOccurrences("Alice"));
+        assertEquals(1, table.getOccurrences("Zo\u00eb"));
+        assertEquals(2, table.getId("Zo\u00eb"));
+        assertEquals("Zo\u00eb", table.getKey(2));
+        assertEquals(3, table.size());
+        assertEquals(-1, table.idOf("John"));
+        assertFalse(table.contains("John"));
+        assertThrows(NoSuchElementException.class, () -> table.getOccurrences("John"));
+
+        // Growing well past the first chunk of the arena and the initial capacity
+        for(int i = 0; i < 5000; i++)
+            table.put("key" + letters(i), i + 1);
+        for(int i = 0; i < 5000; i += 7)
+            assertEquals(i + 1, table.getOccurrences("key" + letters(i)));
+        assertEquals(5003, table.size());
+        assertTrue(table.arenaBytes() > 4096);
+        int[] total = {0};
+        table.forEach((key, count) -> total[0] += count);
+        assertEquals(5000 * 5001 / 2 + 4, total[0]);
+    }
+
+    @Test
+    public void testWordRanking() {
+        // Counts large enough to need two bucket passes, with ties
+        int[] counts = {5, 70000, 1, 5, 1 << 20, 70000};
+        WordRanking ranking = new WordRanking(counts, counts.length);
+
+        // Most common first, ties with the later id first
+        assertArrayEquals(new int[]{4, 5, 1, 3, 0, 2}, ranking.mostCommon(6));
+        // Least common first, ties with the earlier id first
+        assertArrayEquals(new int[]{2, 0, 3}, ranking.leastCommon(3));
+
+        // Equal counts share a rank and the next rank skips past them
+        assertEquals(1, ranking.rank(4));
+        assertEquals(2, ranking.rank(1));
+        assertEquals(2, ranking.rank(5));
+        assertEquals(4, ranking.rank(0));
+        assertEquals(6, ranking.rank(2));
+    }
+
+    @Test
+    public void testFrequencyBuckets() {
+        // Ranked buckets share a rank between equal counts and move an id down again when it is uncounted
+        FrequencyBuckets ranked = new FrequencyBuckets(new int[]{3, 1, 3, 2}, 4);
+        assertEquals(1, ranked.rank(0));
+        assertEquals(1, ranked.rank(2));
+        assertEquals(3, ranked.rank(3));
+        assertEquals(4, ranked.rank(1));
+        assertEquals(2, ranked.decrement(2));
+        assertEquals(2, ranked.rank(2));
+        assertEquals(0, ranked.decrement(1));
+        assertEquals(3, ranked.size());
+        assertThrows(NoSuchElementException.class, () -> ranked.decrement(1));
+        assertArrayEquals(new int[]{0, 3, 2}, ranked.mostCommon(3));
+        assertArrayEquals(new int[]{2, 3}, ranked.between(2, 2));
+        assertEquals(3, ranked.countBetween(2, 3));
+        assertThrows(IllegalArgumentException.class, () -> ranked.between(0, 2));
+        assertThrows(IllegalStateException.class, () -> new FrequencyBuckets(false).rank(0));
+
+        // Buckets without ranks answer ranges by skipping empty buckets
+        FrequencyBuckets unranked = new FrequencyBuckets(false);
+        for(int id = 0; id < 6; id++)
+            for(int n = 0; n <= id % 3 * 2; n++)
+                unranked.increment(id);
+        assertArrayEquals(new int[]{1, 4}, unranked.between(3, 4));
+        assertArrayEquals(new int[]{0, 3, 1, 4, 2, 5}, unranked.between(1, 9));
+        assertEquals(2, unranked.countBetween(5, 5));
+        assertArrayEquals(new int[]{0, 2, 0, 2, 0, 2}, unranked.histogram());
+
+        // Random increments and decrements keep both kinds of buckets walking the counts held in order, checked
+        // against the ids sorted by count, ties in ascending id order
+        Random random = new Random(25);
+        FrequencyBuckets[] kinds = {new FrequencyBuckets(true), new FrequencyBuckets(false)};
+        int[] counts = new int[40];
+        int extent = 0;
+        for(int step = 0; step < 5000; step++) {
+            int id = random.nextInt(Math.min(extent + 1, counts.length));
+            boolean down = counts[id] > 0 && random.nextInt(3) == 0;
+            for(FrequencyBuckets kind : kinds) {
+                if(down)
+                    kind.decrement(id);
+                else
+                    kind.increment(id);
+            }
+            counts[id] += down ? -1 : 1;
+            extent = Math.max(extent, id + 1);
+            if(step % 50 != 0)
+                continue;
+            ArrayList<Integer> sorted = new ArrayList<>();
+            for(int i = 0; i < extent; i++)
+                if(counts[i] > 0)
+                    sorted.add(i);
+            sorted.sort((x, y) -> counts[x] != counts[y] ? counts[x] - counts[y] : x - y);
+            int[] ascending = sorted.stream().mapToInt(Integer::intValue).toArray();
+            int low = 1 + random.nextInt(20), high = low + random.nextInt(20);
+            int[] ranged = sorted.stream().filter(i -> counts[i] >= low && counts[i] <= high)
+                    .mapToInt(Integer::intValue).toArray();
+            for(FrequencyBuckets kind : kinds) {
+                assertArrayEquals(ascending, kind.leastCommon(ascending.length));
+                assertArrayEquals(ranged, kind.between(low, high));
+                int[] descending = kind.mostCommon(ascending.length);
+                for(int i = 1; i < descending.length; i++)
+                    assertTrue(counts[descending[i - 1]] >= counts[descending[i]]);
+            }
+        }
+    }
+
+    @Test
+    public void testWordStat() throws IOException, InterruptedException {
+        WordStat ws = new WordStat("wordstat.txt");
 
         /* WordStat.txt:
         hello test this is a test and I am testing the wordstat method this is a test hello
@@ -113,6 +500,37 @@ public class Assignment4Tester {
         assertEquals("test", ws.mostCommonCollocations(1, "me", false)[0]);
         assertEquals("test", ws.mostCommonCollocations(1, "and", true)[0]);
 
+        // Batched lookups answer absent words with 0 instead of throwing
+        String[] batch = {"test", "absent", "hi", "and"};
+        assertArrayEquals(new int[]{9, 0, 2, 1}, ws.wordCounts(batch));
+        assertArrayEquals(new int[]{1, 0, ws.wordRank("hi"), 7}, ws.wordRanks(batch));
+
+        // Parallel parsing must give exactly the same statistics as the sequential one
+        WordStat parallel = new WordStat("wordstat.txt", true);
+        assertArrayEquals(ws.leastCommonWords(100), parallel.leastCommonWords(100));
+        assertArrayEquals(ws.mostCommonWords(100), parallel.mostCommonWords(100));
+        assertEquals(7, parallel.wordRank("and"));
+        assertEquals(9, parallel.wordCount("test"));
+        assertEquals("test", parallel.mostCommonCollocations(1, "me", false)[0]);
+
+        // Indexed collocations must match the scanned ones
+        String[] scannedFollowing = ws.mostCommonCollocations(3, "a", false);
+        String[] scannedPreceding = ws.mostCommonCollocations(3, "a", true);
+        ws.indexCollocations(3);
+        assertArrayEquals(scannedFollowing, ws.mostCommonCollocations(3, "a", false));
+        assertArrayEquals(scannedPreceding, ws.mostCommonCollocations(3, "a", true));
+        assertEquals("test", ws.mostCommonCollocations(1, "me", false)[0]);
+        assertEquals("test", ws.mostCommonCollocations(1, "and", true)[0]);
+
+        // Counting from a stream without keeping the word sequence
+        WordStat streaming;
+        try (FileReader reader = new FileReader("wordstat.txt")) {
+            streaming = new WordStat(reader, false);
+        }
+        assertArrayEquals(ws.mostCommonWords(100), streaming.mostCommonWords(100));
+        assertEquals(7, streaming.wordRank("i"));
+        assertThrows(IllegalStateException.class, () -> streaming.mostCommonCollocations(1, "me", false));
+
 
         WordStat ws1 = new WordStat(new String[]{"hello test this is a test and I am testing the wordstat method this is a test hello", "hello hi test\n" +
                 "        yes this, is a test\n" +
@@ -140,5 +558,340 @@ public class Assignment4Tester {
         assertEquals(7, ws1.wordRank("i"));
         assertEquals("test", ws1.mostCommonCollocations(1, "me", false)[0]);
         assertEquals("test", ws1.mostCommonCollocations(1, "and", true)[0]);
+
+        // Adding text in place must give the same statistics as building from all of it
+        WordStat incremental = new WordStat(new String[]{"hello test this is a test and I am testing the wordstat method this is a test hello"});
+        incremental.indexCollocations(2);
+        incremental.addText(new String[]{"hello hi test\n" +
+                "        yes this, is a test\n" +
+                "        there. hi it's me\n" +
+                "        test test test test tester?"});
+        assertArrayEquals(ws1.mostCommonWords(100), incremental.mostCommonWords(100));
+        assertArrayEquals(ws1.leastCommonWords(100), incremental.leastCommonWords(100));
+        for(String word : ws1.mostCommonWords(100))
+            assertEquals(ws1.wordRank(word), incremental.wordRank(word));
+        assertEquals(9, incremental.wordCount("test"));
+        assertArrayEquals(ws1.mostCommonCollocations(2, "a", false), incremental.mostCommonCollocations(2, "a", false));
+
+        // Snapshots must round-trip exactly, with and without the word sequence
+        File snapshot = File.createTempFile("wordstat", ".snapshot");
+        snapshot.deleteOnExit();
+        incremental.save(snapshot.getPath());
+        WordStat loaded = WordStat.load(snapshot.getPath());
+        assertArrayEquals(ws1.mostCommonWords(100), loaded.mostCommonWords(100));
+        assertArrayEquals(ws1.leastCommonWords(100), loaded.leastCommonWords(100));
+        assertEquals(7, loaded.wordRank("and"));
+        assertArrayEquals(ws1.mostCommonCollocations(3, "a", true), loaded.mostCommonCollocations(3, "a", true));
+        streaming.save(snapshot.getPath());
+        WordStat loadedStreaming = WordStat.load(snapshot.getPath());
+        assertArrayEquals(ws.mostCommonWords(100), loadedStreaming.mostCommonWords(100));
+        assertThrows(IllegalStateException.class, () -> loadedStreaming.mostCommonCollocations(1, "me", false));
+        assertThrows(IOException.class, () -> WordStat.load("wordstat.txt"));
+
+        // A corrupt snapshot is reported as such: a header claiming more words than the file can hold, a sequence cut
+        // inside its last id, and a sequence holding an id no word has
+        new WordStat(new String[]{"a b a"}).save(snapshot.getPath());
+        byte[] saved = Files.readAllBytes(snapshot.toPath());
+        byte[] oversized = saved.clone();
+        oversized[8] = 0x7F;
+        byte[] truncated = saved.clone();
+        truncated[truncated.length - 1] |= (byte) 0x80;
+        byte[] unknown = saved.clone();
+        unknown[unknown.length - 1] = 2;
+        for(byte[] corrupt : new byte[][]{oversized, truncated, unknown}) {
+            Files.write(snapshot.toPath(), corrupt);
+            IOException e = assertThrows(IOException.class, () -> WordStat.load(snapshot.getPath()));
+            assertTrue(e.getMessage().startsWith("corrupt snapshot"));
+        }
+
+        // A corpus counts like its files read one after the other, leaving out and reporting a file that is missing
+        WordStat corpus = new WordStat(Arrays.asList("wordstat.txt", "missing.txt", "test.txt", "wordstat.txt"), 2);
+        assertEquals(19, corpus.wordCount("test"));
+        assertEquals("test", corpus.mostCommonWords(1)[0]);
+        assertEquals(Collections.singleton("missing.txt"), corpus.failures().keySet());
+        assertTrue(ws.failures().isEmpty());
+        WordStat windowed = new WordStat(Collections.nCopies(9, "wordstat.txt"), 1);
+        assertEquals(81, windowed.wordCount("test"));
+        assertArrayEquals(ws.mostCommonWords(10), windowed.mostCommonWords(10));
+        assertArrayEquals(ws.mostCommonCollocations(3, "a", true), windowed.mostCommonCollocations(3, "a", true));
+
+        // Query latencies are only timed once metrics are enabled, phase timings always
+        assertNull(loaded.stats());
+        WordStatStats stats = loaded.enableStats();
+        assertTrue(stats.getRankNanos() > 0);
+        loaded.wordCount("test");
+        loaded.wordCount("absent");
+        assertThrows(NoSuchElementException.class, () -> loaded.wordRank("absent"));
+        assertEquals(2, stats.getQueryCount("wordCount"));
+        assertEquals(1, stats.getQueryCount("wordRank"));
+        assertTrue(stats.getLatencyPercentileNanos("wordCount", 100) >= stats.getMeanLatencyNanos("wordCount"));
+        assertThrows(IllegalArgumentException.class, () -> stats.getQueryCount("unknown"));
+        Thread[] queriers = new Thread[4];
+        for(int t = 0; t < queriers.length; t++) {
+            queriers[t] = new Thread(() -> {
+                for(int i = 0; i < 10000; i++)
+                    loaded.wordCount("test");
+            });
+            queriers[t].start();
+        }
+        for(Thread querier : queriers)
+            querier.join();
+        assertEquals(40002, stats.getQueryCount("wordCount"));
+        assertEquals(40002, Arrays.stream(stats.getLatencyHistogram("wordCount")).sum());
+
+        // The table the words are counted in reports its resizes and probe lengths as well
+        assertEquals(loaded.distinctWords(), Arrays.stream(stats.getProbeLengthHistogram()).sum());
+        assertTrue(stats.getAverageProbeLength() >= 1.0);
+        String[] distinctWords = new String[2000];
+        for(int i = 0; i < distinctWords.length; i++)
+            distinctWords[i] = letters(i);
+        WordStat grown = new WordStat(distinctWords);
+        assertEquals(2, grown.enableStats().getTableResizes());
+
+        // Words are only ranked by the first ranked query
+        WordStat lazy = new WordStat("wordstat.txt");
+        WordStatStats lazyStats = lazy.enableStats();
+        assertEquals(9, lazy.wordCount("test"));
+        assertEquals(0, lazyStats.getRankNanos());
+        assertEquals(1, lazy.wordRank("test"));
+        assertTrue(lazyStats.getRankNanos() > 0);
+
+        // Repeated word list queries are answered from the cache until words are added
+        QueryCache cache = lazy.enableQueryCache(2);
+        String[] first = lazy.mostCommonWords(3);
+        first[0] = "changed";
+        assertArrayEquals(ws.mostCommonWords(3), lazy.mostCommonWords(3));
+        assertArrayEquals(ws.mostCommonCollocations(2, "a", true), lazy.mostCommonCollocations(2, "a", true));
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+        lazy.leastCommonWords(2);
+        assertEquals(2, cache.size());
+        lazy.mostCommonWords(3);
+        assertEquals(1, cache.hits());
+        lazy.addText(new String[]{"hi hi hi hi hi hi hi hi hi hi"});
+        assertEquals(0, cache.size());
+        assertEquals("hi", lazy.mostCommonWords(3)[0]);
+
+        // Range queries give the words of the least common list whose count is in the range, in the same order, and
+        // the histogram gives the number of words holding every count
+        String[] all = ws.leastCommonWords(ws.distinctWords());
+        for(int[] range : new int[][]{{1, 1}, {2, 3}, {4, 100}, {1, 1000}}) {
+            ArrayList<String> expected = new ArrayList<>();
+            for(String word : all)
+                if(ws.wordCount(word) >= range[0] && ws.wordCount(word) <= range[1])
+                    expected.add(word);
+            assertArrayEquals(expected.toArray(new String[0]), ws.wordsBetween(range[0], range[1]));
+        }
+        assertEquals(0, ws.wordsBetween(1000, 2000).length);
+        assertThrows(IllegalArgumentException.class, () -> ws.wordsBetween(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> ws.wordsBetween(3, 2));
+        int[] histogram = ws.countHistogram();
+        assertEquals(ws.wordCount(ws.mostCommonWords(1)[0]) + 1, histogram.length);
+        assertEquals(0, histogram[0]);
+        int distinct = 0;
+        for(int count = 1; count < histogram.length; count++) {
+            assertEquals(ws.wordsBetween(count, count).length, histogram[count]);
+            distinct += histogram[count];
+        }
+        assertEquals(ws.distinctWords(), distinct);
+        assertEquals(0, new WordStat(new String[0]).countHistogram().length - 1);
+    }
+
+    @Test
+    public void testApproximateWordStat() throws IOException {
+        // A skewed text: word i occurs about 2000 / (i + 1) times, followed by a long tail of words occurring once.
+        // Words are spelled with letters only, base 26, since the tokenizer drops digits
+        ArrayList<String> lines = new ArrayList<>();
+        for(int i = 0; i < 200; i++){
+            StringBuilder line = new StringBuilder();
+            for(int j = 0; j < 2000 / (i + 1); j++)
+                line.append(letters(i)).append(' ');
+            lines.add(line.toString());
+        }
+        for(int i = 0; i < 5000; i++)
+            lines.add("tail" + letters(i));
+        String[] text = lines.toArray(new String[0]);
+
+        WordStat exact = new WordStat(text);
+        ApproximateWordStat approximate = new ApproximateWordStat(1024, 5, 100, 12);
+        approximate.addText(text);
+
+        // Counts never underestimate and stay within e N / width
+        long bound = (long) Math.ceil(Math.E * approximate.totalWords() / 1024);
+        for(String word : new String[]{letters(0), letters(1), letters(50), letters(199), "tail" + letters(7)}){
+            int count = approximate.wordCount(word);
+            assertTrue(count >= exact.wordCount(word));
+            assertTrue(count <= exact.wordCount(word) + bound);
+        }
+
+        // The heavy hitters and their ranks match the exact ones
+        assertArrayEquals(exact.mostCommonWords(5), approximate.mostCommonWords(5));
+        assertEquals(1, approximate.wordRank(letters(0)));
+        assertEquals(exact.wordRank(letters(3)), approximate.wordRank(letters(3)));
+
+        // The distinct count is within a few standard errors of 1.04 / sqrt(4096)
+        assertEquals(exact.distinctWords(), approximate.distinctWords(), exact.distinctWords() * 0.05);
+    }
+
+    @Test
+    public void testWindowedWordStat() throws IOException {
+        // A stream of words drawn from a small vocabulary so counts rise and fall as the window slides
+        Random random = new Random(233);
+        String[] stream = new String[5000];
+        for(int i = 0; i < stream.length; i++)
+            stream[i] = letters(random.nextInt(40));
+
+        // After every batch the window matches the statistics of its last 300 words built from scratch
+        WindowedWordStat window = new WindowedWordStat(300);
+        for(int end = 250; end <= stream.length; end += 250){
+            window.addText(Arrays.copyOfRange(stream, end - 250, end));
+            WordStat exact = new WordStat(Arrays.copyOfRange(stream, end - 300 < 0 ? 0 : end - 300, end));
+            assertEquals(Math.min(end, 300), window.size());
+            assertEquals(exact.distinctWords(), window.distinctWords());
+            for(int i = 0; i < 40; i++)
+                assertEquals(exact.wordCount(letters(i)), window.wordCount(letters(i)));
+            String[] top = window.mostCommonWords(5);
+            for(int i = 0; i < 5; i++)
+                assertEquals(exact.wordCount(exact.mostCommonWords(5)[i]), window.wordCount(top[i]));
+        }
+        assertEquals(0, window.wordCount("absent"));
+        assertEquals(window.distinctWords(), window.mostCommonWords(100).length);
+
+        // A window in time lets words go once they are older than the limit, removing their keys
+        long[] now = {0};
+        WindowedWordStat timed = new WindowedWordStat(0, 1000, () -> now[0]);
+        timed.addStream(new StringReader("alpha beta alpha"));
+        now[0] = 600;
+        timed.addText(new String[]{"beta gamma"});
+        assertEquals(2, timed.wordCount("alpha"));
+        assertArrayEquals(new String[]{"beta", "alpha"}, Arrays.copyOf(timed.mostCommonWords(3), 2));
+        now[0] = 1000;
+        assertEquals(0, timed.wordCount("alpha"));
+        assertEquals(1, timed.wordCount("beta"));
+        assertEquals(2, timed.distinctWords());
+        now[0] = 1600;
+        assertEquals(0, timed.size());
+        assertArrayEquals(new String[0], timed.mostCommonWords(3));
+
+        // A window without any limit is rejected
+        assertThrows(IllegalArgumentException.class, () -> new WindowedWordStat(0));
+    }
+
+    @Test
+    public void testExternalWordStat() throws IOException {
+        // A skewed corpus over two files with enough distinct words to spill many times under a tiny budget
+        Random random = new Random(20);
+        File[] parts = {File.createTempFile("external", ".txt"), File.createTempFile("external", ".txt")};
+        for(File part : parts){
+            part.deleteOnExit();
+            try (PrintWriter out = new PrintWriter(part)) {
+                for(int i = 0; i < 20000; i++)
+                    out.print(letters((int) Math.pow(3000, random.nextDouble())) + (i % 12 == 11 ? "\n" : " "));
+            }
+        }
+        ArrayList<String> files = new ArrayList<>();
+        for(File part : parts)
+            files.add(part.getPath());
+        WordStat exact = new WordStat(files, 2);
+
+        File spillDirectory = Files.createTempDirectory("spill").toFile();
+        spillDirectory.deleteOnExit();
+        // Room for a few dozen words, so partitions are split again before they are merged
+        try (ExternalWordStat external = new ExternalWordStat(files, 4096, spillDirectory.getPath())) {
+            assertTrue(external.spills() > 10);
+            assertEquals(exact.distinctWords(), external.distinctWords());
+            for(int i = 0; i < 3000; i += 7){
+                assertEquals(exact.wordCount(letters(i)), external.wordCount(letters(i)));
+                if(exact.wordCount(letters(i)) > 0)
+                    assertEquals(exact.wordRank(letters(i)), external.wordRank(letters(i)));
+            }
+            assertEquals(0, external.wordCount("absent"));
+            assertThrows(NoSuchElementException.class, () -> external.wordRank("absent"));
+
+            // Same counts as the exact statistics, ties broken alphabetically
+            String[] most = external.mostCommonWords(20), least = external.leastCommonWords(20);
+            assertArrayEquals(exact.wordCounts(exact.mostCommonWords(20)), exact.wordCounts(most));
+            assertArrayEquals(exact.wordCounts(exact.leastCommonWords(20)), exact.wordCounts(least));
+            for(int i = 1; i < 20; i++){
+                if(exact.wordCount(least[i - 1]) == exact.wordCount(least[i]))
+                    assertTrue(least[i - 1].compareTo(least[i]) < 0);
+            }
+        }
+        // Closing deletes the partitions
+        assertEquals(0, spillDirectory.list().length);
+    }
+
+    @Test
+    public void testConcurrentWordStat() throws Exception {
+        // A skewed text fed in batches while readers query the published snapshots
+        Random random = new Random(23);
+        String[][] batches = new String[40][];
+        for(int b = 0; b < batches.length; b++){
+            batches[b] = new String[50];
+            for(int i = 0; i < 50; i++)
+                batches[b][i] = letters((int) Math.pow(500, random.nextDouble())) + " " + letters(random.nextInt(30));
+        }
+        ConcurrentWordStat stat = new ConcurrentWordStat(500, 0);
+        assertEquals(0, stat.snapshot().distinctWords());
+
+        // Every snapshot a reader sees is consistent: ranks follow counts and versions never go back
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread[] readers = new Thread[3];
+        for(int r = 0; r < readers.length; r++){
+            readers[r] = new Thread(() -> {
+                try {
+                    long version = 0;
+                    while(!done.get()){
+                        ConcurrentWordStat.Snapshot snapshot = stat.snapshot();
+                        assertTrue(snapshot.version() >= version);
+                        version = snapshot.version();
+                        String[] top = snapshot.mostCommonWords(10);
+                        for(int i = 1; i < top.length; i++)
+                            assertTrue(snapshot.wordCount(top[i - 1]) >= snapshot.wordCount(top[i]));
+                        if(top.length > 0)
+                            assertEquals(1, snapshot.wordRank(top[0]));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            readers[r].start();
+        }
+        for(String[] batch : batches)
+            stat.addText(batch);
+        done.set(true);
+        for(Thread reader : readers)
+            reader.join();
+        assertNull(failure.get());
+        assertTrue(stat.snapshot().version() > 1);
+
+        // After a final publication the statistics match WordStat over the whole text
+        ConcurrentWordStat.Snapshot last = stat.publish();
+        WordStat exact = new WordStat(Arrays.stream(batches).flatMap(Arrays::stream).toArray(String[]::new));
+        assertEquals(exact.distinctWords(), last.distinctWords());
+        assertArrayEquals(exact.mostCommonWords(20), stat.mostCommonWords(20));
+        assertArrayEquals(exact.leastCommonWords(20), stat.leastCommonWords(20));
+        for(String word : exact.mostCommonWords(50)){
+            assertEquals(exact.wordCount(word), stat.wordCount(word));
+            assertEquals(exact.wordRank(word), stat.wordRank(word));
+        }
+        assertThrows(NoSuchElementException.class, () -> stat.wordRank("absent"));
+
+        // A kept snapshot does not change as text is added
+        stat.addText(new String[]{"zzz zzz zzz"});
+        stat.publish();
+        assertEquals(0, last.wordCount("zzz"));
+        assertEquals(3, stat.wordCount("zzz"));
+    }
+
+    // Helper that spells a number with letters, base 26
+    private static String letters(int n){
+        StringBuilder s = new StringBuilder();
+        do {
+            s.append((char) ('a' + n % 26));
+            n /= 26;
+        } while(n > 0);
+        return s.toString();
     }
 }
@@ -0,0 +1,219 @@
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+ * Class representing a precomputed answer to WordStat.mostCommonCollocations for every base word. For each word it
+ * keeps the most common words before and after its first occurrence, up to a fixed depth, so a query copies at most
+ * depth ids instead of scanning the input.
+ * <p>
+ * The lists are built with two sweeps over the word sequence. A forward sweep counts the prefix of the input and takes a
+ * snapshot of its top words whenever a word occurs for the first time, and a backward sweep does the same with the
+ * suffix. Counts only grow during a sweep, so the top words are kept in a min-heap of size depth: a word outside the
+ * heap can only enter it when its own count grows. Building costs O(n log depth + u depth log depth) for n words and u
+ * distinct words, and the lists take 2 u depth ints
+ */
+public class CollocationIndex {
+    // Field containing the number of collocations kept per base word and direction
+    private final int depth;
+
+    // Fields that hold, for every base word, its collocations before and after its first occurrence, depth ids apiece
+    private final int[] preceding, following;
+
+    // Fields that hold the number of collocations kept for every base word
+    private final int[] precedingLength, followingLength;
+
+    // Field that holds the most common words of the whole input, what precede gives for a word that never occurs
+    private int[] whole;
+
+    // Fields used while sweeping, released once the index is built: counts and tie-breaking positions of every word,
+    // and the heap of top words
+    private int[] counts, ties, heap, heapIndex;
+    private int heapSize;
+
+    /**
+     * Constructor that builds the index of a word sequence
+     * @param sequence ids of every word of the input in order
+     * @param vocabulary number of distinct ids
+     * @param depth number of collocations kept per base word and direction
+     */
+    public CollocationIndex(IdSequence sequence, int vocabulary, int depth){
+        // Checking to ensure parameter is valid
+        if(depth < 0 || (long) vocabulary * depth > Integer.MAX_VALUE)
+            throw new IllegalArgumentException();
+        this.depth = depth;
+        preceding = new int[vocabulary * depth];
+        following = new int[vocabulary * depth];
+        precedingLength = new int[vocabulary];
+        followingLength = new int[vocabulary];
+        counts = new int[vocabulary];
+        ties = new int[vocabulary];
+        heap = new int[depth];
+        heapIndex = new int[vocabulary];
+
+        // Forward sweep: before a word first occurs the prefix holds exactly the words preceding it. Ties go to the
+        // word that appeared last, so the tie-breaking position is fixed at a word's first occurrence
+        Arrays.fill(heapIndex, -1);
+        int[] first = new int[vocabulary];
+        int position = 0;
+        PrimitiveIterator.OfInt it = sequence.iterator();
+        while(it.hasNext()){
+            int id = it.nextInt();
+            if(counts[id] == 0){
+                precedingLength[id] = snapshot(preceding, id * depth);
+                first[id] = position;
+                ties[id] = position;
+            }
+            counts[id]++;
+            offer(id);
+            position++;
+        }
+        whole = new int[depth];
+        whole = Arrays.copyOf(whole, snapshot(whole, 0));
+
+        // Backward sweep: at a word's first occurrence the suffix holds exactly the words following it. Ties go to the
+        // word whose first occurrence in the suffix is last, and every word just added has the earliest one
+        Arrays.fill(counts, 0);
+        Arrays.fill(heapIndex, -1);
+        heapSize = 0;
+        it = sequence.reverseIterator();
+        while(it.hasNext()){
+            int id = it.nextInt();
+            position--;
+            if(first[id] == position)
+                followingLength[id] = snapshot(following, id * depth);
+            counts[id]++;
+            ties[id] = position;
+            offer(id);
+        }
+        counts = ties = heap = heapIndex = null;
+    }
+
+    /**
+     * Method that returns the number of collocations kept per base word and direction
+     * @return depth
+     */
+    public int depth(){
+        return depth;
+    }
+
+    /**
+     * Method that returns the most common words preceding or following the first occurrence of a base word, in the
+     * order WordStat.mostCommonCollocations gives them
+     * @param k number of ids to return, at most depth
+     * @param baseId id of the base word, or -1 for a word that never occurs
+     * @param precede whether to return the words preceding rather than following the base word
+     * @return ids of at most k collocations
+     */
+    public int[] collocations(int k, int baseId, boolean precede){
+        // Checking to ensure parameter is valid
+        if(k < 0 || k > depth)
+            throw new IllegalArgumentException();
+        // A word that never occurs is preceded by the whole input and followed by nothing
+        if(baseId < 0)
+            return precede ? Arrays.copyOf(whole, Math.min(k, whole.length)) : new int[0];
+        int[] lists = precede ? preceding : following;
+        int length = precede ? precedingLength[baseId] : followingLength[baseId];
+        return Arrays.copyOfRange(lists, baseId * depth, baseId * depth + Math.min(k, length));
+    }
+
+    /**
+     * Private helper that copies the words in the heap to the given array, most common first. The heap holds at most
+     * depth words, so an insertion sort is enough
+     * @param target array to copy to
+     * @param offset index of the first copied id
+     * @return number of copied ids
+     */
+    private int snapshot(int[] target, int offset){
+        for(int i = 0; i < heapSize; i++){
+            int id = heap[i];
+            long key = key(id);
+            // Shifting the copied words with a smaller key one place to the right
+            int j = offset + i;
+            while(j > offset && key(target[j - 1]) < key){
+                target[j] = target[j - 1];
+                j--;
+            }
+            target[j] = id;
+        }
+        return heapSize;
+    }
+
+    /**
+     * Private helper that updates the heap after the key of a word grew
+     * @param id word whose count grew
+     */
+    private void offer(int id){
+        if(depth == 0)
+            return;
+        if(heapIndex[id] >= 0)
+            // Already among the top words, only its place changes
+            siftDown(heapIndex[id]);
+        else if(heapSize < depth){
+            // Room left, so the word joins the top words
+            heap[heapSize] = id;
+            heapIndex[id] = heapSize;
+            siftUp(heapSize++);
+        } else if(key(id) > key(heap[0])){
+            // The word beats the weakest of the top words and replaces it
+            heapIndex[heap[0]] = -1;
+            heap[0] = id;
+            heapIndex[id] = 0;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Private helper that returns the ordering key of a word: its count, then its tie-breaking position
+     * @param id word
+     * @return key, larger for a more common word
+     */
+    private long key(int id){
+        return ((long) counts[id] << 32) | ties[id];
+    }
+
+    /**
+     * Private helper that moves a heap entry up while it is smaller than its parent
+     * @param i slot of the entry
+     */
+    private void siftUp(int i){
+        while(i > 0){
+            int parent = (i - 1) >>> 1;
+            if(key(heap[parent]) <= key(heap[i]))
+                return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Private helper that moves a heap entry down while it is larger than one of its children
+     * @param i slot of the entry
+     */
+    private void siftDown(int i){
+        while(true){
+            int smallest = i;
+            int left = 2 * i + 1, right = left + 1;
+            if(left < heapSize && key(heap[left]) < key(heap[smallest]))
+                smallest = left;
+            if(right < heapSize && key(heap[right]) < key(heap[smallest]))
+                smallest = right;
+            if(smallest == i)
+                return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    /**
+     * Private helper that swaps two heap entries
+     * @param i first slot
+     * @param j second slot
+     */
+    private void swap(int i, int j){
+        int a = heap[i];
+        heap[i] = heap[j];
+        heap[j] = a;
+        heapIndex[heap[i]] = i;
+        heapIndex[heap[j]] = j;
+    }
+}
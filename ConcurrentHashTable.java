@@ -0,0 +1,136 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class representing a hash table that several threads can use at once. Keys are split across independent segments,
+ * each one a {@link HashTable} guarded by its own lock, so threads only contend when their keys land in the same
+ * segment. Segments are chosen with the seeded hash of HashTable and a seed of their own, so keys crafted to share a
+ * String.hashCode do not all queue on one lock
+ * @param <T> Type of values stored
+ */
+public class ConcurrentHashTable<T> {
+    // Field that holds the segments keys are split across
+    private final HashTable<T>[] segments;
+
+    // Field that holds the lock guarding each segment
+    private final ReentrantLock[] locks;
+
+    // Field containing the number of distinct keys across all segments
+    private final AtomicInteger size = new AtomicInteger();
+
+    // Field that holds the seed of the hash choosing the segment of a key
+    private final long seed = ThreadLocalRandom.current().nextLong();
+
+    /**
+     * Constructor that creates a concurrent hash table with four segments per available processor
+     */
+    public ConcurrentHashTable(){
+        this(Runtime.getRuntime().availableProcessors() * 4, 500);
+    }
+
+    /**
+     * Constructor that creates a concurrent hash table with a given number of segments and capacity per segment
+     * @param concurrency number of segments, rounded up to a power of two
+     * @param capacity of every segment
+     */
+    public ConcurrentHashTable(int concurrency, int capacity){
+        // Throws exception if input is not valid
+        if(concurrency < 1 || capacity < 0)
+            throw new IllegalArgumentException();
+        // Rounding up so that a segment can be chosen with a mask
+        int count = Integer.highestOneBit(concurrency);
+        if(count < concurrency)
+            count <<= 1;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        HashTable<T>[] tables = new HashTable[count];
+        segments = tables;
+        locks = new ReentrantLock[count];
+        for(int i = 0; i < count; i++){
+            segments[i] = new HashTable<>(capacity);
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Method that returns the size of the hash table
+     * @return number of distinct keys
+     */
+    public int size(){
+        return size.get();
+    }
+
+    /**
+     * Method that returns the value associated with the given key, essentially a wrapper for getNode
+     * @param key given key
+     * @return the value of the key if present
+     */
+    public T get(String key){
+        return getNode(key).getElement();
+    }
+
+    /**
+     * Protected helper method that returns a copy of the node with the given key, read under the lock of its segment.
+     * The copy keeps the occurrences counted when it was taken, so the nodes of the segments never leave their lock
+     * @param key given key
+     * @return Node associated with key
+     */
+    protected HashTable.Node<T> getNode(String key){
+        int s = segment(key);
+        locks[s].lock();
+        try {
+            HashTable.Node<T> n = segments[s].getNode(key);
+            return new HashTable.Node<>(n.getKey(), n.getElement(), n.getOccurrences());
+        } finally {
+            locks[s].unlock();
+        }
+    }
+
+    /**
+     * Method that adds a new element to our hash table given a key and value associated, incrementing the occurrences of
+     * the key instead if it is already present
+     * @param key given key to add
+     * @param value given value of associated key
+     */
+    public void put(String key, T value){
+        int s = segment(key);
+        locks[s].lock();
+        try {
+            // Comparing the segment's size to tell a new key from a duplicate
+            int before = segments[s].size();
+            segments[s].put(key, value);
+            if(segments[s].size() != before)
+                size.incrementAndGet();
+        } finally {
+            locks[s].unlock();
+        }
+    }
+
+    /**
+     * Method that removes an element of a given key from the table
+     * @param key given key to remove
+     * @return the element associated with removed key
+     */
+    public T remove(String key){
+        int s = segment(key);
+        locks[s].lock();
+        try {
+            // Throws NoSuchElementException before size is touched if the key is missing
+            T element = segments[s].remove(key);
+            size.decrementAndGet();
+            return element;
+        } finally {
+            locks[s].unlock();
+        }
+    }
+
+    /**
+     * Helper that returns the segment of a key from its seeded hash, mixing the high bits into the low ones first
+     * @param key given key
+     * @return index of the segment
+     */
+    int segment(String key){
+        int h = HashTable.hash(key, seed);
+        return (h ^ (h >>> 16)) & (segments.length - 1);
+    }
+}
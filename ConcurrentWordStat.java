@@ -0,0 +1,290 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.NoSuchElementException;
+
+/**
+ * Class that gives the statistics of {@link WordStat} to many reader threads while one writer keeps adding text, with
+ * no lock on the read path. The writer counts into tables of its own and, every given number of words or milliseconds,
+ * publishes an immutable {@link Snapshot} of the counts and ranks through a volatile field. A reader only loads that
+ * field, so reads never wait for the writer or for each other, and a snapshot kept by a reader stays consistent however
+ * much text is added afterwards.
+ * <p>
+ * Publishing copies the table of counts and lays the words out in rank order, O(D) for D distinct words, so the
+ * interval trades the freshness of the statistics for the cost of copying them. Words added since the last snapshot are
+ * invisible to readers until the next one
+ */
+public class ConcurrentWordStat {
+    // Field containing the number of words after which the writer publishes a snapshot, Long.MAX_VALUE if unbounded
+    private final long publishWords;
+
+    // Field containing the time in nanoseconds after which the writer publishes a snapshot, Long.MAX_VALUE if unbounded
+    private final long publishNanos;
+
+    // Field that holds an open-addressing hashtable counting the words, only used by the writer
+    private final OpenHashTable table = new OpenHashTable();
+
+    // Field that holds the words grouped by count, only used by the writer
+    private final FrequencyBuckets buckets = new FrequencyBuckets(false);
+
+    // Fields containing the number of words counted, the number when the last snapshot was published, and the time
+    private long total = 0, publishedTotal = 0, publishedAt = System.nanoTime();
+
+    // Field that holds the last published snapshot
+    private volatile Snapshot snapshot = new Snapshot(new OpenHashTable(), new int[0], new int[0], 0, 0);
+
+    /**
+     * Constructor that creates empty statistics publishing a snapshot every given number of words or milliseconds,
+     * whichever comes first
+     * @param publishWords number of words after which a snapshot is published, 0 for no limit
+     * @param publishMillis time in milliseconds after which a snapshot is published, 0 for no limit
+     */
+    public ConcurrentWordStat(long publishWords, long publishMillis){
+        // Checking to ensure parameters are valid
+        if(publishWords < 0 || publishMillis < 0)
+            throw new IllegalArgumentException();
+        this.publishWords = publishWords == 0 ? Long.MAX_VALUE : publishWords;
+        this.publishNanos = publishMillis == 0 ? Long.MAX_VALUE : publishMillis * 1_000_000;
+    }
+
+    /**
+     * Method that adds the words of a text file. Writers are serialized, readers are not blocked
+     * @param file File path of a txt file
+     * @throws IOException Thrown in the event that tokenizer cannot read the file
+     */
+    public synchronized void addFile(String file) throws IOException {
+        Tokenizer.tokenize(file, false, this::add);
+        publishIfDue();
+    }
+
+    /**
+     * Method that adds the words of an array of strings. Writers are serialized, readers are not blocked
+     * @param text Array of string to parse
+     */
+    public synchronized void addText(String[] text){
+        Tokenizer.tokenize(text, this::add);
+        publishIfDue();
+    }
+
+    /**
+     * Method that adds the words of a stream of characters as they are read, until the stream ends. Writers are
+     * serialized, readers are not blocked
+     * @param reader stream of characters, left open
+     * @throws IOException Thrown in the event that the stream cannot be read
+     */
+    public synchronized void addStream(Reader reader) throws IOException {
+        Tokenizer.tokenize(reader, this::add);
+        publishIfDue();
+    }
+
+    /**
+     * Method that publishes a snapshot of every word added so far, whatever the interval
+     * @return the published snapshot
+     */
+    public synchronized Snapshot publish(){
+        // Laying the ids out from the most to the least common, ties in descending id order like WordStat
+        int size = buckets.size();
+        int[] order = buckets.mostCommon(size);
+        int[] ranks = new int[size];
+        for(int i = 0; i < size; i++){
+            // Equal counts share the rank of the first of them
+            boolean tie = i > 0 && buckets.count(order[i]) == buckets.count(order[i - 1]);
+            ranks[order[i]] = tie ? ranks[order[i - 1]] : i + 1;
+        }
+        Snapshot published = new Snapshot(table.copy(), order, ranks, total, snapshot.version + 1);
+        publishedTotal = total;
+        publishedAt = System.nanoTime();
+        snapshot = published;
+        return published;
+    }
+
+    /**
+     * Method that returns the last published snapshot, whose statistics never change
+     * @return snapshot
+     */
+    public Snapshot snapshot(){
+        return snapshot;
+    }
+
+    /**
+     * Method that returns the number of times the word is used in the last snapshot
+     * @param word the word to be searched for
+     * @return int # of times the word occurs
+     */
+    public int wordCount(String word){
+        return snapshot.wordCount(word);
+    }
+
+    /**
+     * Method that returns the "rank" of the word in the last snapshot
+     * @param word the word to find the "rank" of
+     * @return the word's "rank"
+     */
+    public int wordRank(String word){
+        return snapshot.wordRank(word);
+    }
+
+    /**
+     * Method that returns the k most common words in the last snapshot
+     * @param k number of words to return
+     * @return Array in descending order of the k most common words
+     */
+    public String[] mostCommonWords(int k){
+        return snapshot.mostCommonWords(k);
+    }
+
+    /**
+     * Method that returns the k least common words in the last snapshot
+     * @param k number of words to return
+     * @return Array in ascending order of the k least common words
+     */
+    public String[] leastCommonWords(int k){
+        return snapshot.leastCommonWords(k);
+    }
+
+    /**
+     * Private helper that counts a word handed over by the tokenizer, publishing a snapshot once the interval is over
+     * @param buffer buffer holding the word
+     * @param offset index of the first character of the word
+     * @param length number of characters in the word
+     */
+    private void add(char[] buffer, int offset, int length){
+        buckets.increment(table.put(buffer, offset, length));
+        total++;
+        // Reading the clock only every 1024 words keeps the check off the cost of a word
+        if(total - publishedTotal >= publishWords)
+            publish();
+        else if((total & 1023) == 0 && System.nanoTime() - publishedAt >= publishNanos)
+            publish();
+    }
+
+    /**
+     * Private helper that publishes a snapshot if new words were added and the interval is reached
+     */
+    private void publishIfDue(){
+        if(total == publishedTotal)
+            return;
+        if(total - publishedTotal >= publishWords || System.nanoTime() - publishedAt >= publishNanos)
+            publish();
+    }
+
+    /**
+     * Class representing the statistics of the words added up to the moment it was published. Nothing in it changes
+     * after publication, so any number of threads may query it at once without locks
+     */
+    public static final class Snapshot {
+        // Field that holds the counts of the words, never changed after publication
+        private final OpenHashTable table;
+
+        // Field that holds the ids from the most to the least common
+        private final int[] order;
+
+        // Field that holds the rank of every id
+        private final int[] ranks;
+
+        // Fields containing the number of words counted and the number of snapshots published before plus one
+        private final long total, version;
+
+        /**
+         * Constructor that wraps the published statistics
+         * @param table counts of the words
+         * @param order ids from the most to the least common
+         * @param ranks rank of every id
+         * @param total number of words counted
+         * @param version number of the snapshot
+         */
+        private Snapshot(OpenHashTable table, int[] order, int[] ranks, long total, long version){
+            this.table = table;
+            this.order = order;
+            this.ranks = ranks;
+            this.total = total;
+            this.version = version;
+        }
+
+        /**
+         * Method that returns the number of the snapshot, increasing with every publication
+         * @return version
+         */
+        public long version(){
+            return version;
+        }
+
+        /**
+         * Method that returns the number of words counted
+         * @return # of words
+         */
+        public long totalWords(){
+            return total;
+        }
+
+        /**
+         * Method that returns the number of distinct words
+         * @return # of distinct words
+         */
+        public int distinctWords(){
+            return order.length;
+        }
+
+        /**
+         * Method that returns the number of times the word is used
+         * @param word the word to be searched for
+         * @return int # of times the word occurs
+         */
+        public int wordCount(String word){
+            int id = table.idOf(word);
+            // Return 0 if the word doesn't appear
+            return id < 0 ? 0 : table.getOccurrences(id);
+        }
+
+        /**
+         * Method that returns the "rank" of the word in terms of how often it occurs
+         * @param word the word to find the "rank" of
+         * @return the word's "rank"
+         */
+        public int wordRank(String word){
+            int id = table.idOf(word);
+            // Only reachable if the word never occurs
+            if(id < 0)
+                throw new NoSuchElementException();
+            return ranks[id];
+        }
+
+        /**
+         * Method that returns the k most common words
+         * @param k number of words to return
+         * @return Array in descending order of the k most common words
+         */
+        public String[] mostCommonWords(int k){
+            // Checking to ensure parameter is valid
+            if(k < 0)
+                // If not throw exception
+                throw new IllegalArgumentException();
+            // If k is too large change to the max
+            if(k > order.length)
+                k = order.length;
+            String[] words = new String[k];
+            for(int i = 0; i < k; i++)
+                words[i] = table.getKey(order[i]);
+            return words;
+        }
+
+        /**
+         * Method that returns the k least common words
+         * @param k number of words to return
+         * @return Array in ascending order of the k least common words
+         */
+        public String[] leastCommonWords(int k){
+            // Checks for valid k value
+            if(k < 0)
+                // If not valid throw exception
+                throw new IllegalArgumentException();
+            // If k is too large make it the number of distinct words
+            if(k > order.length)
+                k = order.length;
+            // The rank order read backwards, ties then in ascending id order
+            String[] words = new String[k];
+            for(int i = 0; i < k; i++)
+                words[i] = table.getKey(order[order.length - 1 - i]);
+            return words;
+        }
+    }
+}
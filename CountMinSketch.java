@@ -0,0 +1,81 @@
+/**
+ * Class representing a Count-Min sketch: a fixed grid of counters answering how often a key was added without storing
+ * the keys. Every key is counted in one counter per row, and its estimate is the smallest of those counters.
+ * <p>
+ * Estimates never fall below the true count. With width w and depth d, an estimate exceeds the true count by more than
+ * e N / w, N being the number of keys added, with probability at most e^-d. Choosing w = ceil(e / epsilon) and
+ * d = ceil(ln(1 / delta)) therefore bounds the error by epsilon N with probability 1 - delta, in 4 w d bytes
+ */
+public class CountMinSketch {
+    // Field that holds the counters, row after row
+    private final int[] counters;
+
+    // Fields containing the number of counters per row and the number of rows
+    private final int width, depth;
+
+    // Field containing the number of keys added
+    private long total = 0;
+
+    /**
+     * Constructor that creates an empty sketch of the given dimensions
+     * @param width number of counters per row
+     * @param depth number of rows
+     */
+    public CountMinSketch(int width, int depth){
+        // Throws exception if input is not valid
+        if(width < 1 || depth < 1 || (long) width * depth > Integer.MAX_VALUE)
+            throw new IllegalArgumentException();
+        this.width = width;
+        this.depth = depth;
+        counters = new int[width * depth];
+    }
+
+    /**
+     * Constructor that creates an empty sketch whose estimates exceed the true count by at most epsilon times the number
+     * of keys added, with probability at least 1 - delta
+     * @param epsilon relative error
+     * @param delta probability of exceeding the error
+     */
+    public CountMinSketch(double epsilon, double delta){
+        this((int) Math.ceil(Math.E / epsilon), (int) Math.ceil(Math.log(1 / delta)));
+    }
+
+    /**
+     * Method that returns the number of keys added
+     * @return total
+     */
+    public long total(){
+        return total;
+    }
+
+    /**
+     * Method that adds one occurrence of a key
+     * @param hash 64-bit hash of the key
+     */
+    public void add(long hash){
+        // Deriving one column per row from the two halves of the hash
+        int h1 = (int) hash, h2 = (int) (hash >>> 32);
+        for(int row = 0; row < depth; row++){
+            int column = ((h1 + row * h2) & Integer.MAX_VALUE) % width;
+            // Saturating instead of wrapping around
+            if(counters[row * width + column] != Integer.MAX_VALUE)
+                counters[row * width + column]++;
+        }
+        total++;
+    }
+
+    /**
+     * Method that returns the estimated number of occurrences of a key, never below the true number
+     * @param hash 64-bit hash of the key
+     * @return estimate
+     */
+    public int estimate(long hash){
+        int h1 = (int) hash, h2 = (int) (hash >>> 32);
+        int min = Integer.MAX_VALUE;
+        for(int row = 0; row < depth; row++){
+            int column = ((h1 + row * h2) & Integer.MAX_VALUE) % width;
+            min = Math.min(min, counters[row * width + column]);
+        }
+        return min;
+    }
+}
@@ -0,0 +1,581 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Class that gives the exact counts and ranks of {@link WordStat} for corpora whose vocabulary does not fit in the heap,
+ * keeping at most a given number of bytes of words in memory. Words are counted in a hashtable until it outgrows the
+ * budget, then the partial counts are spilled to one of 64 partition files on disk chosen by the hash of the word and
+ * the table starts over. Since every occurrence of a word lands in the same partition, each partition is then merged
+ * on its own into exact counts and written sorted; a partition still too large for the budget is split again by the
+ * next bits of the hash.
+ * <p>
+ * Queries read the sorted partitions through memory mappings, so they use the page cache rather than the heap:
+ * wordCount and wordRank binary search one partition, and ranks come from the histogram of counts, whose size is the
+ * number of distinct counts rather than words. mostCommonWords and leastCommonWords scan every partition keeping the
+ * best k words, and break ties between equal counts in alphabetical order since first appearances are not kept.
+ * The partition files live in a directory of their own, deleted by close
+ */
+public class ExternalWordStat implements AutoCloseable {
+    // Number of partitions a spill or an oversized partition is split into, and the hash bits picking one
+    private static final int FANOUT = 64, FANOUT_BITS = 6;
+
+    // Largest number of times a partition is split again, after which it is merged whatever its size
+    private static final int MAX_LEVEL = 64 / FANOUT_BITS - 1;
+
+    // Estimated heap bytes taken by a word in the hashtable besides its characters: the String, its slot and its count
+    private static final int ENTRY_BYTES = 96;
+
+    // Size of the buffer of every spill file, kept small since all partitions are open at once while counting
+    private static final int SPILL_BUFFER = 8192;
+
+    // Field containing the largest estimated number of bytes of words held in memory at once
+    private final long memoryBudget;
+
+    // Field that holds the directory of the partition files
+    private final Path directory;
+
+    // Field that holds the root of the partitions, split by the hash of the words
+    private final Partition root = new Partition();
+
+    // Fields that hold every distinct count in ascending order, and the number of words counted strictly more
+    private int[] countValues;
+    private long[] above;
+
+    // Fields containing the number of distinct words, the number of words, and the number of times counts were spilled
+    private long distinct = 0, total = 0;
+    private int spills = 0;
+
+    // Field that holds the number of files written, used to name them
+    private int files = 0;
+
+    /**
+     * Constructor that counts the words of the given files, spilling partial counts to a new directory inside the
+     * given one whenever the words in memory outgrow the budget
+     * @param files File paths of txt files, counted as one corpus
+     * @param memoryBudget largest estimated number of bytes of words held in memory at once
+     * @param spillDirectory directory in which the partition files are created
+     * @throws IOException Thrown in the event that a file cannot be read or a partition cannot be written
+     */
+    public ExternalWordStat(List<String> files, long memoryBudget, String spillDirectory) throws IOException {
+        // Checking to ensure parameters are valid
+        if(memoryBudget < 1)
+            throw new IllegalArgumentException();
+        this.memoryBudget = memoryBudget;
+        directory = Files.createTempDirectory(Paths.get(spillDirectory), "wordstat-");
+        TreeMap<Integer, Long> histogram = new TreeMap<>();
+        try {
+            count(files);
+            // Merging every partition into its sorted file
+            for(int p = 0; p < FANOUT; p++)
+                merge(root.children[p], 1, histogram);
+        } catch (IOException | RuntimeException e) {
+            // Nothing is left behind by a failed build
+            close();
+            throw e;
+        }
+        // Ranks from the counts, the words with a larger count being those of the larger entries
+        countValues = new int[histogram.size()];
+        above = new long[histogram.size()];
+        long greater = 0;
+        int i = histogram.size() - 1;
+        for(Map.Entry<Integer, Long> entry : histogram.descendingMap().entrySet()){
+            countValues[i] = entry.getKey();
+            above[i--] = greater;
+            greater += entry.getValue();
+        }
+    }
+
+    /**
+     * Method that returns the number of times the word is used
+     * @param word the word to be searched for
+     * @return int # of times the word occurs
+     */
+    public int wordCount(String word){
+        Partition partition = root.leaf(hash(word));
+        int i = partition.find(word);
+        // Return 0 if the word doesn't appear
+        return i < 0 ? 0 : partition.count(i);
+    }
+
+    /**
+     * Method that returns the "rank" of the word in terms of how often it occurs
+     * @param word the word to find the "rank" of
+     * @return the word's "rank"
+     */
+    public long wordRank(String word){
+        int count = wordCount(word);
+        // Only reachable if the word never occurs
+        if(count == 0)
+            throw new NoSuchElementException();
+        // One more than the number of words with a strictly greater count
+        return above[Arrays.binarySearch(countValues, count)] + 1;
+    }
+
+    /**
+     * Method that returns the number of distinct words
+     * @return # of distinct words
+     */
+    public long distinctWords(){
+        return distinct;
+    }
+
+    /**
+     * Method that returns the number of words counted
+     * @return # of words
+     */
+    public long totalWords(){
+        return total;
+    }
+
+    /**
+     * Method that returns the number of times partial counts were spilled to disk while counting
+     * @return # of spills
+     */
+    public int spills(){
+        return spills;
+    }
+
+    /**
+     * Method that returns the k most common words, equal counts in alphabetical order
+     * @param k number of words to return
+     * @return Array in descending order of the k most common words
+     */
+    public String[] mostCommonWords(int k){
+        // Best words are those with the largest count, then the smallest word
+        return best(k, Comparator.<Word>comparingInt(w -> w.count).reversed().thenComparing(w -> w.word));
+    }
+
+    /**
+     * Method that returns the k least common words, equal counts in alphabetical order
+     * @param k number of words to return
+     * @return Array in ascending order of the k least common words
+     */
+    public String[] leastCommonWords(int k){
+        // Best words are those with the smallest count, then the smallest word
+        return best(k, Comparator.<Word>comparingInt(w -> w.count).thenComparing(w -> w.word));
+    }
+
+    /**
+     * Method that deletes the partition files and their directory. Queries must not be made afterwards
+     * @throws IOException Thrown in the event that a file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for(Path path : (Iterable<Path>) paths::iterator)
+                Files.deleteIfExists(path);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Private helper that counts the words of the given files, spilling the counts to the partitions of the root
+     * whenever they outgrow the budget and once more at the end
+     * @param files File paths of txt files
+     */
+    private void count(List<String> files) throws IOException {
+        root.children = new Partition[FANOUT];
+        DataOutputStream[] outputs = new DataOutputStream[FANOUT];
+        for(int p = 0; p < FANOUT; p++){
+            root.children[p] = new Partition();
+            root.children[p].spill = newFile();
+            outputs[p] = open(root.children[p].spill);
+        }
+        try {
+            OpenHashTable[] table = {new OpenHashTable()};
+            long[] used = {0};
+            for(String file : files){
+                Tokenizer.tokenize(file, false, (buffer, offset, length) -> {
+                    int size = table[0].size();
+                    table[0].put(buffer, offset, length);
+                    total++;
+                    // A new word takes its characters and an entry of the table
+                    if(table[0].size() > size){
+                        used[0] += ENTRY_BYTES + 2L * length;
+                        if(used[0] > memoryBudget){
+                            spills++;
+                            spill(table[0], outputs, 0);
+                            table[0] = new OpenHashTable();
+                            used[0] = 0;
+                        }
+                    }
+                });
+            }
+            spill(table[0], outputs, 0);
+        } catch (UncheckedIOException e) {
+            // Thrown by a spill made from inside the tokenizer
+            throw e.getCause();
+        } finally {
+            for(DataOutputStream output : outputs)
+                output.close();
+        }
+    }
+
+    /**
+     * Private helper that appends the counts of a table to the partitions chosen by the hash bits of the given level
+     * @param table counted words
+     * @param outputs partition files of the level
+     * @param level number of times the words were partitioned before
+     */
+    private void spill(OpenHashTable table, DataOutputStream[] outputs, int level){
+        table.forEach((word, count) -> {
+            try {
+                write(outputs[slice(hash(word), level)], word, count);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Private helper that merges the partial counts of a spilled partition into exact counts, writing them sorted, or
+     * splits the partition by the next hash bits if its words outgrow the budget
+     * @param partition spilled partition
+     * @param level number of hash slices that picked the partition
+     * @param histogram number of words with every count, updated with the words of the partition
+     */
+    private void merge(Partition partition, int level, TreeMap<Integer, Long> histogram) throws IOException {
+        OpenHashTable table = new OpenHashTable();
+        long used = 0;
+        boolean split = false;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(partition.spill), 1 << 16))) {
+            Record record = new Record();
+            while(read(input, record)){
+                int size = table.size();
+                table.put(record.word, record.count);
+                if(table.size() > size){
+                    used += ENTRY_BYTES + 2L * record.word.length();
+                    // Too many words for one pass, unless the hash has no bits left to split them by
+                    if(used > memoryBudget && level <= MAX_LEVEL){
+                        split = true;
+                        break;
+                    }
+                }
+            }
+        }
+        if(split){
+            split(partition, level, histogram);
+            return;
+        }
+        // Sorting the words so queries can binary search them, ids being dense since nothing was removed
+        OpenHashTable counts = table;
+        Integer[] order = new Integer[counts.size()];
+        for(int id = 0; id < order.length; id++)
+            order[id] = id;
+        Arrays.sort(order, Comparator.comparing(counts::getKey));
+        Path sorted = newFile();
+        try (DataOutputStream output = open(sorted)) {
+            // Header of offsets, then the records in word order
+            output.writeInt(order.length);
+            long offset = 4 + 4L * order.length;
+            for(int id : order){
+                output.writeInt((int) offset);
+                offset += 8 + counts.getKey(id).getBytes(StandardCharsets.UTF_8).length;
+                // A single mapping holds at most 2 GiB
+                if(offset > Integer.MAX_VALUE)
+                    throw new IOException("partition too large: " + sorted);
+            }
+            for(int id : order){
+                byte[] bytes = counts.getKey(id).getBytes(StandardCharsets.UTF_8);
+                output.writeInt(counts.getOccurrences(id));
+                output.writeInt(bytes.length);
+                output.write(bytes);
+                histogram.merge(counts.getOccurrences(id), 1L, Long::sum);
+            }
+        }
+        distinct += order.length;
+        Files.delete(partition.spill);
+        partition.spill = null;
+        partition.map(sorted);
+    }
+
+    /**
+     * Private helper that splits a spilled partition by the next hash bits and merges every part
+     * @param partition spilled partition
+     * @param level number of hash slices that picked the partition
+     * @param histogram number of words with every count, updated with the words of the partition
+     */
+    private void split(Partition partition, int level, TreeMap<Integer, Long> histogram) throws IOException {
+        partition.children = new Partition[FANOUT];
+        DataOutputStream[] outputs = new DataOutputStream[FANOUT];
+        try {
+            for(int p = 0; p < FANOUT; p++){
+                partition.children[p] = new Partition();
+                partition.children[p].spill = newFile();
+                outputs[p] = open(partition.children[p].spill);
+            }
+            // Streaming the records to the parts, so the partition is never held in memory
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(partition.spill), 1 << 16))) {
+                Record record = new Record();
+                while(read(input, record))
+                    write(outputs[slice(hash(record.word), level)], record.word, record.count);
+            }
+        } finally {
+            for(DataOutputStream output : outputs){
+                if(output != null)
+                    output.close();
+            }
+        }
+        Files.delete(partition.spill);
+        partition.spill = null;
+        for(Partition child : partition.children)
+            merge(child, level + 1, histogram);
+    }
+
+    /**
+     * Private helper that returns the k best words of every partition for the given order, keeping only k of them in
+     * memory at any time
+     * @param k number of words to return
+     * @param order order in which the first words are the best
+     * @return Array of the k best words in that order
+     */
+    private String[] best(int k, Comparator<Word> order){
+        // Checking to ensure parameter is valid
+        if(k < 0)
+            // If not throw exception
+            throw new IllegalArgumentException();
+        // If k is too large change to the max
+        int limit = (int) Math.min(k, distinct);
+        // Heap whose head is the worst of the best words found so far
+        PriorityQueue<Word> heap = new PriorityQueue<>(Math.max(limit, 1), order.reversed());
+        if(limit > 0)
+            root.forEachLeaf(leaf -> {
+                for(int i = 0; i < leaf.size; i++){
+                    Word word = new Word(leaf.word(i), leaf.count(i));
+                    if(heap.size() < limit)
+                        heap.add(word);
+                    else if(order.compare(word, heap.peek()) < 0){
+                        // Better than the worst kept word, which makes room for it
+                        heap.poll();
+                        heap.add(word);
+                    }
+                }
+            });
+        String[] words = new String[heap.size()];
+        for(int i = words.length - 1; i >= 0; i--)
+            words[i] = heap.poll().word;
+        return words;
+    }
+
+    /**
+     * Private helper that returns a new file in the directory of the partitions
+     * @return path of the file
+     */
+    private Path newFile(){
+        return directory.resolve("partition-" + files++);
+    }
+
+    /**
+     * Private helper that opens a partition file for writing
+     * @param path path of the file
+     * @return buffered stream over the file
+     */
+    private static DataOutputStream open(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), SPILL_BUFFER));
+    }
+
+    /**
+     * Private helper that writes a word and its count as a spill record
+     * @param output partition file
+     * @param word given word
+     * @param count count of the word
+     */
+    private static void write(DataOutputStream output, String word, int count) throws IOException {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(count);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Private helper that reads the next spill record
+     * @param input partition file
+     * @param record record receiving the word and its count
+     * @return false at the end of the file
+     */
+    private static boolean read(DataInputStream input, Record record) throws IOException {
+        int count;
+        try {
+            count = input.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        record.count = count;
+        record.word = new String(bytes, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    /**
+     * Private helper that returns the partition of a hash at the given level, taken from the highest bits first
+     * @param hash hash of a word
+     * @param level number of slices taken before
+     * @return partition index
+     */
+    private static int slice(long hash, int level){
+        return (int) (hash >>> (64 - FANOUT_BITS * (level + 1))) & (FANOUT - 1);
+    }
+
+    /**
+     * Private helper that returns the 64-bit hash of a word: FNV-1a over its characters, then a final mix so that every
+     * slice of bits depends on every character
+     * @param word given word
+     * @return hash
+     */
+    private static long hash(String word){
+        long h = 0xCBF29CE484222325L;
+        for(int j = 0; j < word.length(); j++)
+            h = (h ^ word.charAt(j)) * 0x100000001B3L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85EC3L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Class representing a spill record read back from a partition file
+     */
+    private static class Record {
+        // Fields that hold the word and its partial count
+        private String word;
+        private int count;
+    }
+
+    /**
+     * Class representing a word and its count while the best words are selected
+     */
+    private static class Word {
+        // Fields that hold the word and its count
+        private final String word;
+        private final int count;
+
+        /**
+         * Constructor that pairs a word with its count
+         * @param word given word
+         * @param count count of the word
+         */
+        private Word(String word, int count){
+            this.word = word;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Class representing a partition of the words, either split into children by the next hash bits or holding its
+     * words sorted in a mapped file
+     */
+    private static class Partition {
+        // Field that holds the parts of a split partition, null for a leaf
+        private Partition[] children;
+
+        // Field that holds the file of partial counts before the partition is merged
+        private Path spill;
+
+        // Field that holds the sorted words and counts of a merged leaf, null if it has no words
+        private MappedByteBuffer data;
+
+        // Field containing the number of words of a merged leaf
+        private int size = 0;
+
+        /**
+         * Private helper that maps the sorted file of a merged leaf
+         * @param file sorted file
+         */
+        private void map(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if(channel.size() > Integer.MAX_VALUE)
+                    throw new IOException("partition too large: " + file);
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            size = data.getInt(0);
+        }
+
+        /**
+         * Private helper that returns the leaf holding the words of the given hash
+         * @param hash hash of a word
+         * @return leaf
+         */
+        private Partition leaf(long hash){
+            Partition partition = this;
+            for(int level = 0; partition.children != null; level++)
+                partition = partition.children[slice(hash, level)];
+            return partition;
+        }
+
+        /**
+         * Private helper that passes every leaf under this partition to the given action
+         * @param action action to perform on every leaf
+         */
+        private void forEachLeaf(Consumer<Partition> action){
+            if(children == null)
+                action.accept(this);
+            else
+                for(Partition child : children)
+                    child.forEachLeaf(action);
+        }
+
+        /**
+         * Private helper that binary searches a word in the sorted file
+         * @param word given word
+         * @return index of the word, or -1 if it is not present
+         */
+        private int find(String word){
+            int low = 0, high = size - 1;
+            while(low <= high){
+                int middle = (low + high) >>> 1;
+                int compare = word(middle).compareTo(word);
+                if(compare < 0)
+                    low = middle + 1;
+                else if(compare > 0)
+                    high = middle - 1;
+                else
+                    return middle;
+            }
+            return -1;
+        }
+
+        /**
+         * Private helper that returns the word at the given index of the sorted file
+         * @param i index of the word
+         * @return word
+         */
+        private String word(int i){
+            int offset = data.getInt(4 + 4 * i);
+            byte[] bytes = new byte[data.getInt(offset + 4)];
+            data.get(offset + 8, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Private helper that returns the count at the given index of the sorted file
+         * @param i index of the word
+         * @return count
+         */
+        private int count(int i){
+            return data.getInt(data.getInt(4 + 4 * i));
+        }
+    }
+}
@@ -0,0 +1,463 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+/**
+ * Class representing the words of a growing text grouped in buckets by how often they occur, so that counts, ranks and
+ * the most and least common words stay correct as words are added one at a time. Counting a word moves it from one
+ * bucket to the next in constant time, and a Fenwick tree over the bucket sizes gives in O(log M) the number of words
+ * up to a count, M being the largest count, which is all a rank needs. Words can be uncounted as well, releasing their
+ * id once their count reaches zero, and buckets without ranks skip the Fenwick tree so every update is O(1). The
+ * buckets holding some id are also linked in order of count, which a word moving to the next or previous count keeps
+ * in O(1), so walks from one bucket to the next never visit empty ones. The ids whose count lies in a range are found
+ * in O(log M) for the first bucket plus the number of ids, and the bucket sizes are the number of ids holding every
+ * count.
+ * <p>
+ * Every bucket is a doubly linked list of ids. Words enter a bucket at its tail, so buckets usually stay in id order;
+ * a bucket a word entered out of order is only sorted again the next time a query walks it, at a cost of O(r log r)
+ * for its r ids. Besides the ids, memory is six ints per possible count up to the largest one
+ */
+public class FrequencyBuckets {
+    // Marker used where there is no id
+    private static final int NONE = -1;
+
+    // Field that holds the number of occurrences of every id, 0 for an id that is not counted
+    private int[] counts;
+
+    // Fields that hold the neighbours of every id in its bucket
+    private int[] next, previous;
+
+    // Field containing the number of ids with a count, and one past the largest id ever counted
+    private int size = 0, extent = 0;
+
+    // Field containing the largest count of any id, 0 if there is none
+    private int max = 0;
+
+    // Fields that hold the first and last id of the bucket of every count, and the number of ids in it
+    private int[] heads, tails, sizes;
+
+    // Fields that hold the next larger and smaller count whose bucket holds some id, count 0 heading the circular list
+    // so that higher[0] is the smallest count held and lower[0] the largest
+    private int[] higher, lower;
+
+    // Field that holds the Fenwick tree over the bucket sizes, entry i covering the counts from i - (i & -i) + 1 to i,
+    // null if ranks are not maintained
+    private int[] tree;
+
+    // Field that marks the buckets whose ids may be out of order
+    private final BitSet unsorted = new BitSet();
+
+    /**
+     * Constructor that groups the given counts in buckets, maintaining ranks
+     * @param counts number of occurrences of every id, each at least one
+     * @param size number of ids, counts[0] to counts[size - 1]
+     */
+    public FrequencyBuckets(int[] counts, int size){
+        // Checking to ensure parameter is valid
+        if(size < 0 || size > counts.length)
+            throw new IllegalArgumentException();
+        for(int id = 0; id < size; id++){
+            if(counts[id] < 1)
+                throw new IllegalArgumentException();
+            max = Math.max(max, counts[id]);
+        }
+        this.counts = Arrays.copyOf(counts, Math.max(size, 16));
+        next = new int[this.counts.length];
+        previous = new int[this.counts.length];
+        allocate(max, true);
+        // Appending the ids in order so every bucket starts sorted
+        for(int id = 0; id < size; id++)
+            append(id, counts[id]);
+        this.size = extent = size;
+        build();
+        // Linking the buckets that hold some id in order of count
+        for(int count = 1; count <= max; count++){
+            if(sizes[count] > 0)
+                link(count, lower[0]);
+        }
+    }
+
+    /**
+     * Constructor that creates empty buckets
+     * @param ranked whether to maintain ranks, at a cost of O(log M) instead of O(1) per update
+     */
+    public FrequencyBuckets(boolean ranked){
+        counts = new int[16];
+        next = new int[16];
+        previous = new int[16];
+        allocate(0, ranked);
+    }
+
+    /**
+     * Method that returns the number of ids with a count
+     * @return size
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Method that returns the number of occurrences of an id
+     * @param id counted id
+     * @return occurrences of the id
+     */
+    public int count(int id){
+        return counts[id];
+    }
+
+    /**
+     * Method that adds an occurrence of an id, moving it to the next bucket
+     * @param id counted id, an id released by decrement, or one past the largest id ever counted to add a new id
+     */
+    public void increment(int id){
+        // Checking to ensure parameter is valid
+        if(id < 0 || id > extent)
+            throw new IllegalArgumentException();
+        if(id == extent){
+            // New id, making room for it
+            if(extent == counts.length){
+                counts = Arrays.copyOf(counts, extent * 2);
+                next = Arrays.copyOf(next, extent * 2);
+                previous = Arrays.copyOf(previous, extent * 2);
+            }
+            extent++;
+        }
+        int count = counts[id];
+        if(count == 0)
+            size++;
+        else {
+            // Taking the id out of its current bucket
+            unlink(id, count);
+            update(count, -1);
+        }
+        int from = count;
+        count++;
+        counts[id] = count;
+        if(count >= heads.length)
+            grow(count);
+        // The next bucket takes the place of the one left empty, or follows the one left, in the list of counts held
+        if(sizes[count] == 0)
+            link(count, from);
+        if(from > 0 && sizes[from] == 0)
+            unlinkCount(from);
+        append(id, count);
+        update(count, 1);
+        max = Math.max(max, count);
+    }
+
+    /**
+     * Method that removes an occurrence of an id, moving it to the previous bucket and releasing the id when its count
+     * reaches zero
+     * @param id counted id
+     * @return occurrences left
+     */
+    public int decrement(int id){
+        // Checking to ensure the id is counted
+        if(id < 0 || id >= extent || counts[id] == 0)
+            throw new NoSuchElementException();
+        int count = counts[id];
+        unlink(id, count);
+        update(count, -1);
+        // The id was alone with the largest count, so the largest count is now its own
+        if(count == max && sizes[count] == 0)
+            max--;
+        // The previous bucket takes the place of the one left empty, or precedes the one left, in the list of counts held
+        if(count > 1 && sizes[count - 1] == 0)
+            link(count - 1, lower[count]);
+        if(sizes[count] == 0)
+            unlinkCount(count);
+        count--;
+        counts[id] = count;
+        if(count == 0)
+            size--;
+        else {
+            append(id, count);
+            update(count, 1);
+        }
+        return count;
+    }
+
+    /**
+     * Method that returns the rank of an id, 1 being the most common and equal counts sharing a rank
+     * @param id counted id
+     * @return rank of the id
+     * @throws IllegalStateException if ranks are not maintained
+     */
+    public int rank(int id){
+        if(tree == null)
+            throw new IllegalStateException("ranks are not maintained");
+        // One more than the number of ids with a strictly greater count
+        return size - prefix(counts[id]) + 1;
+    }
+
+    /**
+     * Method that returns the k most common ids, equal counts in descending id order
+     * @param k number of ids to return, at most size()
+     * @return ids in descending order of count
+     */
+    public int[] mostCommon(int k){
+        int[] ids = new int[k];
+        int n = 0;
+        // Walking the buckets from the largest count down, each one from its tail
+        for(int count = lower[0]; n < k; count = lower[count]){
+            sort(count);
+            for(int id = tails[count]; id != NONE && n < k; id = previous[id])
+                ids[n++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Method that returns the k least common ids, equal counts in ascending id order
+     * @param k number of ids to return, at most size()
+     * @return ids in ascending order of count
+     */
+    public int[] leastCommon(int k){
+        int[] ids = new int[k];
+        int n = 0;
+        // Walking the buckets from the smallest count up, each one from its head
+        for(int count = higher[0]; n < k; count = higher[count]){
+            sort(count);
+            for(int id = heads[count]; id != NONE && n < k; id = next[id])
+                ids[n++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Method that returns the number of ids with a count from low to high, in O(log M) when ranks are maintained
+     * @param low smallest count, at least one
+     * @param high largest count, at least low
+     * @return number of ids
+     */
+    public int countBetween(int low, int high){
+        // Checking to ensure parameters are valid
+        if(low < 1 || high < low)
+            throw new IllegalArgumentException();
+        int limit = Math.min(high, max);
+        if(low > limit)
+            return 0;
+        if(tree != null)
+            return prefix(limit) - prefix(low - 1);
+        int n = 0;
+        for(int count = low; count <= limit; count++)
+            n += sizes[count];
+        return n;
+    }
+
+    /**
+     * Method that returns the ids with a count from low to high, only visiting the buckets that hold some id
+     * @param low smallest count, at least one
+     * @param high largest count, at least low
+     * @return ids in ascending order of count, equal counts in ascending id order
+     */
+    public int[] between(int low, int high){
+        int[] ids = new int[countBetween(low, high)];
+        // An empty range may start past the largest count, where there are no buckets to walk
+        if(ids.length == 0)
+            return ids;
+        int n = 0;
+        // Walking the buckets from the smallest count in the range up, each one from its head
+        for(int count = ceiling(low); n < ids.length; count = higher[count]){
+            sort(count);
+            for(int id = heads[count]; id != NONE; id = next[id])
+                ids[n++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Method that returns the number of ids holding every count, the frequencies of frequencies
+     * @return array whose entry c is the number of ids occurring c times, from 0 to the largest count
+     */
+    public int[] histogram(){
+        // The bucket sizes are the histogram, entry 0 always being empty
+        return Arrays.copyOf(sizes, max + 1);
+    }
+
+    /**
+     * Private helper that returns the smallest count held by some id from the given one up, with the Fenwick tree when
+     * ranks are maintained and otherwise by skipping empty buckets
+     * @param count given count, at most the largest count held
+     * @return smallest count held from the given one
+     */
+    private int ceiling(int count){
+        if(tree != null)
+            return find(prefix(count - 1) + 1);
+        while(sizes[count] == 0)
+            count++;
+        return count;
+    }
+
+    /**
+     * Private helper that inserts a count whose bucket just got its first id into the list of counts held
+     * @param count given count
+     * @param after count held right before it, 0 if it is the smallest
+     */
+    private void link(int count, int after){
+        int next = higher[after];
+        higher[count] = next;
+        lower[count] = after;
+        higher[after] = count;
+        lower[next] = count;
+    }
+
+    /**
+     * Private helper that removes a count whose bucket just lost its last id from the list of counts held
+     * @param count given count
+     */
+    private void unlinkCount(int count){
+        higher[lower[count]] = higher[count];
+        lower[higher[count]] = lower[count];
+    }
+
+    /**
+     * Private helper that allocates empty buckets for every count up to at least the given one
+     * @param max largest count to hold
+     * @param ranked whether to allocate the Fenwick tree
+     */
+    private void allocate(int max, boolean ranked){
+        int capacity = Integer.highestOneBit(Math.max(max, 8)) * 2;
+        heads = new int[capacity];
+        tails = new int[capacity];
+        sizes = new int[capacity];
+        higher = new int[capacity];
+        lower = new int[capacity];
+        tree = ranked ? new int[capacity] : null;
+        Arrays.fill(heads, NONE);
+        Arrays.fill(tails, NONE);
+    }
+
+    /**
+     * Private helper that doubles the buckets until the given count fits, rebuilding the Fenwick tree
+     * @param count count that must fit
+     */
+    private void grow(int count){
+        int old = heads.length;
+        int capacity = old;
+        while(capacity <= count)
+            capacity *= 2;
+        heads = Arrays.copyOf(heads, capacity);
+        tails = Arrays.copyOf(tails, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        higher = Arrays.copyOf(higher, capacity);
+        lower = Arrays.copyOf(lower, capacity);
+        Arrays.fill(heads, old, capacity, NONE);
+        Arrays.fill(tails, old, capacity, NONE);
+        if(tree != null){
+            tree = new int[capacity];
+            build();
+        }
+    }
+
+    /**
+     * Private helper that builds the Fenwick tree from the bucket sizes in linear time, adding every entry to the one
+     * covering it next
+     */
+    private void build(){
+        System.arraycopy(sizes, 0, tree, 0, sizes.length);
+        for(int i = 1; i < tree.length; i++){
+            int parent = i + (i & -i);
+            if(parent < tree.length)
+                tree[parent] += tree[i];
+        }
+    }
+
+    /**
+     * Private helper that changes the size of a bucket in the Fenwick tree
+     * @param count count of the bucket
+     * @param delta change in size
+     */
+    private void update(int count, int delta){
+        if(tree == null)
+            return;
+        for(int i = count; i < tree.length; i += i & -i)
+            tree[i] += delta;
+    }
+
+    /**
+     * Private helper that returns the number of ids with at most the given count
+     * @param count given count
+     * @return number of ids
+     */
+    private int prefix(int count){
+        int sum = 0;
+        for(int i = count; i > 0; i -= i & -i)
+            sum += tree[i];
+        return sum;
+    }
+
+    /**
+     * Private helper that returns the smallest count such that the given number of ids have at most that count,
+     * descending the Fenwick tree one bit at a time
+     * @param target number of ids, from 1 to size()
+     * @return count reaching the target
+     */
+    private int find(int target){
+        int count = 0;
+        for(int step = tree.length >>> 1; step > 0; step >>>= 1){
+            if(count + step < tree.length && tree[count + step] < target){
+                count += step;
+                target -= tree[count];
+            }
+        }
+        return count + 1;
+    }
+
+    /**
+     * Private helper that adds an id at the tail of a bucket, marking the bucket if that breaks its id order
+     * @param id given id
+     * @param count count of the bucket
+     */
+    private void append(int id, int count){
+        int tail = tails[count];
+        if(tail == NONE)
+            heads[count] = id;
+        else {
+            next[tail] = id;
+            if(tail > id)
+                unsorted.set(count);
+        }
+        previous[id] = tail;
+        next[id] = NONE;
+        tails[count] = id;
+        sizes[count]++;
+    }
+
+    /**
+     * Private helper that takes an id out of a bucket, which keeps the order of the other ids
+     * @param id given id
+     * @param count count of the bucket
+     */
+    private void unlink(int id, int count){
+        if(previous[id] == NONE)
+            heads[count] = next[id];
+        else
+            next[previous[id]] = next[id];
+        if(next[id] == NONE)
+            tails[count] = previous[id];
+        else
+            previous[next[id]] = previous[id];
+        sizes[count]--;
+    }
+
+    /**
+     * Private helper that puts the ids of a bucket back in order if it was marked
+     * @param count count of the bucket
+     */
+    private void sort(int count){
+        if(!unsorted.get(count))
+            return;
+        unsorted.clear(count);
+        // Collecting, sorting and linking the ids again
+        int[] ids = new int[sizes[count]];
+        int n = 0;
+        for(int id = heads[count]; id != NONE; id = next[id])
+            ids[n++] = id;
+        Arrays.sort(ids);
+        heads[count] = tails[count] = NONE;
+        sizes[count] = 0;
+        for(int id : ids)
+            append(id, count);
+    }
+}
@@ -1,23 +1,59 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Class representing a hash table
+ * Class representing a hash table. Keys are hashed with a random seed chosen per table, so a set of keys colliding in
+ * one table cannot be prepared in advance the way colliding String.hashCode values can, and a bucket holding more than
+ * TREEIFY_THRESHOLD keys turns into a balanced tree, so even keys that do collide cost O(log n) per operation.
+ * <p>
+ * The nodes of the table can be walked with forEach, an iterator, or a stream whose spliterator splits the buckets in
+ * halves, so parallel streams process them on several threads. The table must not be changed during a walk
  * @param <T> Type of values stored
  */
-public class HashTable<T> {
+public class HashTable<T> implements Iterable<HashTable.Node<T>> {
+    // Number of old buckets moved to the new table by every operation during an incremental rehash
+    private static final int MIGRATION_STEP = 4;
+
+    // Number of keys above which a bucket is turned into a tree, and below which a tree is turned back into a chain
+    private static final int TREEIFY_THRESHOLD = 8, UNTREEIFY_THRESHOLD = 6;
+
     // Field that holds the hash table array
-    private LinkedList<Node<T>>[] table;
+    private Bin<T>[] table;
+
+    // Field that holds the table being emptied by an incremental rehash, null if no rehash is in progress
+    private Bin<T>[] oldTable;
+
+    // Field that holds the seed of the hash function of this table
+    private final long seed;
 
-    // Field containing the size of the hash table
+    // Field containing the index of the next bucket of oldTable to be moved
+    private int migrated = 0;
+
+    // Field that states whether rehashing is spread over later operations instead of done at once
+    private final boolean incremental;
+
+    // Field containing the number of distinct keys in the hash table
     private int size = 0;
 
+    // Field that holds the metrics of the table, null unless enableStats was called
+    private HashTableStats stats;
+
     /**
      * Constructor that creates a hash table with a default capacity of 500 to keep load factor relatively low
      * while maintaining a low space complexity
      */
     public HashTable(){
-        table = new LinkedList[500];
+        this(500);
     }
 
     /**
@@ -25,20 +61,122 @@ public class HashTable<T> {
      * @param capacity of hash table
      */
     public HashTable(int capacity){
+        this(capacity, false);
+    }
+
+    /**
+     * Constructor that creates a hash table with a given capacity and rehashing mode. In incremental mode a rehash
+     * only allocates the new table, and every following put, get and remove moves a few buckets of the old one, so no
+     * single operation pays for the whole table
+     * @param capacity of hash table
+     * @param incremental whether rehashing is spread over later operations
+     */
+    public HashTable(int capacity, boolean incremental){
+        this(capacity, incremental, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructor that creates a hash table with a given capacity, rehashing mode and hash seed, so that the layout of
+     * the keys can be reproduced
+     * @param capacity of hash table
+     * @param incremental whether rehashing is spread over later operations
+     * @param seed seed of the hash function
+     */
+    HashTable(int capacity, boolean incremental, long seed){
         // Throws exception if input is not valid
         if(capacity < 0)
             throw new IllegalArgumentException();
-        table = new LinkedList[capacity];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Bin<T>[] bins = new Bin[Math.max(capacity, 1)];
+        table = bins;
+        this.incremental = incremental;
+        this.seed = seed;
     }
 
     /**
      * Method that returns the size of the hash table
-     * @return size
+     * @return number of distinct keys
      */
     public int size(){
         return size;
     }
 
+    /**
+     * Method that starts collecting metrics on the table: probes per lookup and put, rehashes and time spent deciding
+     * to rehash. Until it is called the only cost is a null check per operation
+     * @return metrics of the table, the same object on every call
+     */
+    public HashTableStats enableStats(){
+        if(stats == null)
+            stats = new HashTableStats(this);
+        return stats;
+    }
+
+    /**
+     * Method that returns the metrics of the table
+     * @return metrics, or null if enableStats was never called
+     */
+    public HashTableStats stats(){
+        return stats;
+    }
+
+    /**
+     * Method that returns the chain-length histogram of the table, counting during a rehash the buckets of the old table
+     * that have not been moved yet
+     * @return number of buckets holding 0, 1, 2, ... keys
+     */
+    public int[] chainLengthHistogram(){
+        int[] histogram = new int[1];
+        histogram = addChains(histogram, table, 0);
+        if(oldTable != null)
+            histogram = addChains(histogram, oldTable, migrated);
+        return histogram;
+    }
+
+    /**
+     * Method that passes every node of the table to the given action, bucket by bucket
+     * @param action action to perform on every node
+     */
+    @Override
+    public void forEach(Consumer<? super Node<T>> action){
+        finishRehash();
+        // Parses every bucket and every node in it
+        for(Bin<T> bin : table){
+            if(bin != null)
+                for(Node<T> n : bin.nodes())
+                    action.accept(n);
+        }
+    }
+
+    /**
+     * Method that returns an iterator over the nodes of the table, bucket by bucket
+     * @return iterator over the nodes
+     */
+    @Override
+    public Iterator<Node<T>> iterator(){
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Method that returns a spliterator over the nodes of the table, which splits off half of its remaining buckets at
+     * a time
+     * @return spliterator over the nodes
+     */
+    @Override
+    public Spliterator<Node<T>> spliterator(){
+        finishRehash();
+        return new BinSpliterator<>(table, 0, table.length, size);
+    }
+
+    /**
+     * Method that returns a stream of the nodes of the table
+     * @param parallel whether the stream processes the buckets on several threads
+     * @return stream of the nodes
+     */
+    public Stream<Node<T>> stream(boolean parallel){
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
     /**
      * Method that returns the value associated with the given key, essentially a wrapper for getNode
      * @param key given key
@@ -55,19 +193,47 @@ public class HashTable<T> {
      * @return Node associated with key
      */
     protected Node<T> getNode(String key){
-        // Retrieving hashed index
-        int index = Math.abs(key.hashCode()%table.length);
-        // Checks that the index is present in the table
-        if(table[index] != null){
-            // Iterates through the chain at the given index until the key is found
-            for(Node<T> n : table[index]) {
-                // If keys match return the element
-                if (n.key.equals(key))
-                    return n;
-            }
-        }
+        Node<T> n = lookup(key);
         // Only reachable if no such element is present in table
-        throw new NoSuchElementException();
+        if(n == null)
+            throw new NoSuchElementException();
+        return n;
+    }
+
+    /**
+     * Method that returns the value associated with the given key, or the given default if the key is not present.
+     * Unlike get a missing key is not an error, so callers expecting mostly misses pay no exception for them
+     * @param key given key
+     * @param defaultValue value returned if the key is not present
+     * @return the value of the key if present, otherwise defaultValue
+     */
+    public T getOrDefault(String key, T defaultValue){
+        Node<T> n = lookup(key);
+        return n == null ? defaultValue : n.element;
+    }
+
+    /**
+     * Method that returns whether the given key is present in the table
+     * @param key given key
+     * @return true if the key is present
+     */
+    public boolean contains(String key){
+        return lookup(key) != null;
+    }
+
+    /**
+     * Private helper that returns the node with the given key without throwing on a miss
+     * @param key given key
+     * @return Node associated with key or null if there is none
+     */
+    private Node<T> lookup(String key){
+        // Moving part of the old table if a rehash is in progress
+        migrate();
+        // Searching both tables
+        Node<T> n = findNode(key, hash(key));
+        if(stats != null)
+            stats.recordLookup();
+        return n;
     }
 
     /**
@@ -76,31 +242,26 @@ public class HashTable<T> {
      * @param value given value of associated key
      */
     public void put(String key, T value){
-        // Retrieving hashed index
-        int index = Math.abs(key.hashCode()%table.length);
-        // Checking if hashed index is already in use
-        if(table[index] != null) {
-            boolean duplicate = false;
-
-            // Checks for duplicates and increments the nodes occurrences if they match
-            for (Node<T> n : table[index]) {
-                if (n.key.equals(key)) {
-                    // Increment occurrences and change duplicate to prevent adding a second occurrence
-                    duplicate = true;
-                    n.occurrences++;
-                }
-            }
-            // Checking if duplicate key
-            if(!duplicate)
-                // O(1) insertion if not a duplicate
-                table[index].addFirst(new Node<>(key, value));
-        }
-        else {
-            // Reachable if hashed index has not been used
-            // Creates a new chain and adds the given value
-            table[index] = new LinkedList<>();
-            table[index].add(new Node<>(key, value));
+        // Moving part of the old table if a rehash is in progress
+        migrate();
+        // Checks for a duplicate and increments the node's occurrences if there is one
+        int hash = hash(key);
+        Node<T> n = findNode(key, hash);
+        if(stats != null)
+            stats.recordPut();
+        if(n != null) {
+            n.occurrences++;
+            return;
         }
+        // Retrieving hashed index
+        int index = index(hash, table.length);
+        // Creates a new bin if the hashed index has not been used
+        if(table[index] == null)
+            table[index] = new Bin<>();
+        // Insertion as the key is not a duplicate, O(1) in a chain and O(log n) in a tree
+        n = new Node<>(key, value);
+        n.hash = hash;
+        table[index].add(n);
         // Increments size
         size++;
         updateLoadFactor();
@@ -112,49 +273,364 @@ public class HashTable<T> {
      * @return the element associated with removed key
      */
     public T remove(String key){
-        // Retrieving hashed index
-        int index = Math.abs(key.hashCode()%table.length);
-        // Checking if hashed index is in use at all
-        if(table[index] != null){
-            // Parses through the chain at the hashed index
-            for(Node<T> n : table[index]) {
-                // If keys match remove from chain, decrement size, return the element associated with that key
-                if (n.key.equals(key)) {
-                    table[index].remove(n);
-                    size--;
-                    updateLoadFactor();
-                    return n.element;
-                }
-            }
-        }
+        // Moving part of the old table if a rehash is in progress
+        migrate();
+        // Trying the current table first, then the part of the old table that has not been moved yet
+        int hash = hash(key);
+        Node<T> n = removeFrom(table, key, hash);
+        if(n == null && oldTable != null && index(hash, oldTable.length) >= migrated)
+            n = removeFrom(oldTable, key, hash);
         // Only accessible if hashed index is not in use or not in chain
-        throw new NoSuchElementException();
+        if(n == null)
+            throw new NoSuchElementException();
+        size--;
+        return n.element;
+    }
+
+    /**
+     * Private helper that returns the seeded hash of a key with the seed of this table
+     * @param key given key
+     * @return hash of the key
+     */
+    private int hash(String key){
+        return hash(key, seed);
+    }
+
+    /**
+     * Helper that returns the seeded hash of a key. Every character is mixed into a 64-bit state started from the
+     * seed, then the state is folded so every bit of the result depends on every character
+     * @param key given key
+     * @param seed seed of the hash function
+     * @return hash of the key
+     */
+    static int hash(String key, long seed){
+        long h = seed;
+        for(int i = 0; i < key.length(); i++)
+            h = (h ^ key.charAt(i)) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Private helper that returns the index of a hash in a table of the given length, scaling the hash down to the
+     * length with a multiplication instead of a modulo so the high bits of the hash pick the bucket
+     * @param hash hash of a key
+     * @param length length of the table
+     * @return hashed index
+     */
+    private static int index(int hash, int length){
+        return (int) (((hash & 0xFFFFFFFFL) * length) >>> 32);
+    }
+
+    /**
+     * Private helper that searches the current table and, during a rehash, the buckets of the old table that have not
+     * been moved yet
+     * @param key given key
+     * @param hash hash of the key
+     * @return Node associated with key or null if there is none
+     */
+    private Node<T> findNode(String key, int hash){
+        Node<T> n = findIn(table, key, hash);
+        if(n == null && oldTable != null && index(hash, oldTable.length) >= migrated)
+            n = findIn(oldTable, key, hash);
+        return n;
+    }
+
+    /**
+     * Private helper that searches the bin of a key in the given table
+     * @param t table to search
+     * @param key given key
+     * @param hash hash of the key
+     * @return Node associated with key or null if there is none
+     */
+    private Node<T> findIn(Bin<T>[] t, String key, int hash){
+        Bin<T> bin = t[index(hash, t.length)];
+        // Checks that the index is present in the table
+        return bin == null ? null : bin.find(key, hash, stats);
+    }
+
+    /**
+     * Private helper that unlinks the node of a key from its bin in the given table
+     * @param t table to remove from
+     * @param key given key
+     * @param hash hash of the key
+     * @return removed Node or null if there is none
+     */
+    private static <T> Node<T> removeFrom(Bin<T>[] t, String key, int hash){
+        Bin<T> bin = t[index(hash, t.length)];
+        // Checking if hashed index is in use at all
+        return bin == null ? null : bin.remove(key, hash);
     }
 
     /**
      * Private helper that updates the load factor of the hashtable and rehashes if needed
      */
     private void updateLoadFactor(){
-        // Update load factor
+        // Timing the call only when metrics are enabled
+        long start = stats != null ? System.nanoTime() : 0;
         // Field containing the current load factor
         double load = (double) size / table.length;
         // If load factor at threshold or greater rehash
-        if(load >= 1.0){
-            // New temporary hash table with double the capacity of the first
-            HashTable<T> reHash = new HashTable<>(table.length*2);
-            // Parses the slots in the table
-            for(LinkedList<Node<T>> l : table){
-                // Ensures the node is non-null
-                if(l != null) {
-                    // Parses every chain
-                    for (Node<T> n : l) {
-                        // Rehashes every node
-                        reHash.put(n.key, n.element);
-                    }
+        boolean rehash = load >= 1.0;
+        if(rehash){
+            // Finishing any rehash still in progress before starting another
+            while(oldTable != null)
+                migrateBucket();
+            // New table with double the capacity of the first
+            oldTable = table;
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Bin<T>[] bins = new Bin[table.length*2];
+            table = bins;
+            migrated = 0;
+            // Without incremental mode every bucket is moved right away
+            if(!incremental) {
+                while(oldTable != null)
+                    migrateBucket();
+            }
+        }
+        if(stats != null)
+            stats.recordLoadFactor(System.nanoTime() - start, rehash);
+    }
+
+    /**
+     * Private helper that adds the chain lengths of part of a table to a histogram
+     * @param histogram histogram to add to
+     * @param t table to count
+     * @param from first bucket counted
+     * @return the histogram, grown if a chain was longer than it covered
+     */
+    private static <T> int[] addChains(int[] histogram, Bin<T>[] t, int from){
+        for(int i = from; i < t.length; i++){
+            int length = t[i] == null ? 0 : t[i].size();
+            if(length >= histogram.length)
+                histogram = Arrays.copyOf(histogram, length + 1);
+            histogram[length]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * Private helper that moves every remaining bucket of the old table, so that a walk over the nodes only has one
+     * table to visit and lookups made during the walk do not move nodes under it
+     */
+    private void finishRehash(){
+        while(oldTable != null)
+            migrateBucket();
+    }
+
+    /**
+     * Private helper that moves a bounded number of buckets of the old table while a rehash is in progress
+     */
+    private void migrate(){
+        for(int i = 0; i < MIGRATION_STEP && oldTable != null; i++)
+            migrateBucket();
+    }
+
+    /**
+     * Private helper that moves the next bucket of the old table into the current one, reusing its nodes so their
+     * occurrences are kept
+     */
+    private void migrateBucket(){
+        Bin<T> bin = oldTable[migrated];
+        // Ensures the bucket is non-null
+        if(bin != null){
+            // Relinks every node of the bin at its new index, using the hash cached in the node
+            for(Node<T> n : bin.nodes()){
+                int index = index(n.hash, table.length);
+                if(table[index] == null)
+                    table[index] = new Bin<>();
+                table[index].add(n);
+            }
+            oldTable[migrated] = null;
+        }
+        migrated++;
+        // Dropping the old table once every bucket has been moved
+        if(migrated == oldTable.length){
+            oldTable = null;
+            migrated = 0;
+        }
+    }
+
+    /**
+     * Private nested class representing a bucket of the table: a chain while it holds few keys, and a tree ordered by
+     * key once it holds more than TREEIFY_THRESHOLD, so that keys colliding on purpose still cost O(log n)
+     * @param <F> Type of element
+     */
+    private static class Bin<F> {
+
+        // Field that holds the nodes while the bin is a chain, null while it is a tree
+        private LinkedList<Node<F>> chain = new LinkedList<>();
+
+        // Field that holds the nodes by key while the bin is a tree, null while it is a chain
+        private TreeMap<String, Node<F>> tree;
+
+        /**
+         * Method that returns the number of keys in the bin
+         * @return size
+         */
+        int size(){
+            return chain != null ? chain.size() : tree.size();
+        }
+
+        /**
+         * Method that returns the nodes of the bin
+         * @return nodes
+         */
+        Collection<Node<F>> nodes(){
+            return chain != null ? chain : tree.values();
+        }
+
+        /**
+         * Method that returns the node of a key
+         * @param key given key
+         * @param hash hash of the key
+         * @param stats metrics counting the compared keys, null if metrics are disabled
+         * @return Node associated with key or null if there is none
+         */
+        Node<F> find(String key, int hash, HashTableStats stats){
+            if(tree != null){
+                // A tree compares about log2(size) keys
+                if(stats != null)
+                    stats.probe(32 - Integer.numberOfLeadingZeros(tree.size()));
+                return tree.get(key);
+            }
+            // Iterates through the chain until the key is found, comparing hashes before keys
+            for(Node<F> n : chain) {
+                // Counting the compared keys when metrics are enabled
+                if(stats != null)
+                    stats.probe(1);
+                if(n.hash == hash && n.key.equals(key))
+                    return n;
+            }
+            return null;
+        }
+
+        /**
+         * Method that adds a node whose key is not in the bin yet, turning the chain into a tree if it gets too long
+         * @param n node to add
+         */
+        void add(Node<F> n){
+            if(tree != null){
+                tree.put(n.key, n);
+                return;
+            }
+            chain.addFirst(n);
+            if(chain.size() > TREEIFY_THRESHOLD){
+                tree = new TreeMap<>();
+                for(Node<F> node : chain)
+                    tree.put(node.key, node);
+                chain = null;
+            }
+        }
+
+        /**
+         * Method that unlinks the node of a key, turning the tree back into a chain if it gets short
+         * @param key given key
+         * @param hash hash of the key
+         * @return removed Node or null if there is none
+         */
+        Node<F> remove(String key, int hash){
+            if(tree != null){
+                Node<F> n = tree.remove(key);
+                if(tree.size() < UNTREEIFY_THRESHOLD){
+                    chain = new LinkedList<>(tree.values());
+                    tree = null;
+                }
+                return n;
+            }
+            // Parses through the chain once, removing through the iterator when keys match
+            Iterator<Node<F>> it = chain.iterator();
+            while(it.hasNext()) {
+                Node<F> n = it.next();
+                if(n.hash == hash && n.key.equals(key)) {
+                    it.remove();
+                    return n;
                 }
             }
-            // Completes rehash
-            table = reHash.table;
+            return null;
+        }
+    }
+
+    /**
+     * Private nested class representing a spliterator over a range of buckets, splitting off the first half of the
+     * buckets it has not started yet
+     * @param <F> Type of element
+     */
+    private static class BinSpliterator<F> implements Spliterator<Node<F>> {
+
+        // Field that holds the buckets
+        private final Bin<F>[] bins;
+
+        // Fields containing the next bucket to start and the bucket after the last one
+        private int index, end;
+
+        // Field containing the estimated number of nodes left, exact until the first split
+        private long estimate;
+
+        // Field that holds the nodes left in the bucket being walked, null between buckets
+        private Iterator<Node<F>> current;
+
+        /**
+         * Constructor that creates a spliterator over a range of buckets
+         * @param bins buckets
+         * @param index first bucket
+         * @param end bucket after the last one
+         * @param estimate estimated number of nodes in the range
+         */
+        BinSpliterator(Bin<F>[] bins, int index, int end, long estimate){
+            this.bins = bins;
+            this.index = index;
+            this.end = end;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Node<F>> action){
+            // Moving on to the next non-empty bucket once the current one is done
+            while(current == null || !current.hasNext()){
+                if(index >= end)
+                    return false;
+                Bin<F> bin = bins[index++];
+                current = bin == null ? null : bin.nodes().iterator();
+            }
+            action.accept(current.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Node<F>> action){
+            // Finishing the current bucket, then parsing the rest of the range directly
+            if(current != null)
+                current.forEachRemaining(action);
+            current = null;
+            for(; index < end; index++){
+                if(bins[index] != null)
+                    for(Node<F> n : bins[index].nodes())
+                        action.accept(n);
+            }
+        }
+
+        @Override
+        public Spliterator<Node<F>> trySplit(){
+            int middle = (index + end) >>> 1;
+            // Too few buckets left to be worth splitting
+            if(middle <= index)
+                return null;
+            BinSpliterator<F> prefix = new BinSpliterator<>(bins, index, middle, estimate >>> 1);
+            index = middle;
+            estimate -= estimate >>> 1;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize(){
+            return estimate;
+        }
+
+        @Override
+        public int characteristics(){
+            return DISTINCT | NONNULL;
         }
     }
 
@@ -170,6 +646,9 @@ public class HashTable<T> {
         // Field that holds the element
         private final F element;
 
+        // Field that holds the hash of the key in the table holding the node, so rehashing does not hash the key again
+        private int hash;
+
         // Field that holds how many times this key has been inputted, how duplicates are dealt with in this implementation
         private int occurrences = 1;
 
@@ -179,6 +658,13 @@ public class HashTable<T> {
             this.element = element;
         }
 
+        // Constructor that creates a new node with given key, element and number of occurrences
+        public Node(String key, F element, int occurrences) {
+            this.key = key;
+            this.element = element;
+            this.occurrences = occurrences;
+        }
+
         /**
          * Occurrences getter
          * @return # of occurrences of Nodes key
@@ -187,6 +673,14 @@ public class HashTable<T> {
             return occurrences;
         }
 
+        /**
+         * Getter method for a node's element
+         * @return Node's element
+         */
+        public F getElement() {
+            return element;
+        }
+
         /**
          * Getter method for a node's key
          * @return Node's key
@@ -0,0 +1,125 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Class holding the metrics of a {@link HashTable}, collected only once HashTable.enableStats has been called so that
+ * a table without metrics pays a single null check per operation. Counters are updated by the thread using the table
+ * and read without synchronization, so a reader on another thread such as a JMX client may see slightly stale values
+ */
+public class HashTableStats implements HashTableStatsMBean {
+
+    // Field that holds the table the metrics belong to, used to compute the chain-length histogram on demand
+    private final HashTable<?> table;
+
+    // Field containing the keys compared by the operation in progress, moved to its total once it is finished
+    private long pendingProbes = 0;
+
+    // Fields containing the number of lookups and puts and the keys compared by each kind
+    private long lookups = 0, lookupProbes = 0, puts = 0, putProbes = 0;
+
+    // Fields containing the number of rehashes and the time spent in updateLoadFactor
+    private long rehashes = 0, loadFactorNanos = 0;
+
+    /**
+     * Constructor that creates empty metrics for the given table
+     * @param table table the metrics belong to
+     */
+    public HashTableStats(HashTable<?> table){
+        this.table = table;
+    }
+
+    /**
+     * Method that registers the metrics with the platform MBean server
+     * @param name value of the name key of the object name, unique among the registered tables
+     * @return object name the metrics were registered under
+     * @throws JMException Thrown in the event that the name is invalid or already registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("wordstat:type=HashTable,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public int getSize(){
+        return table.size();
+    }
+
+    @Override
+    public long getLookups(){
+        return lookups;
+    }
+
+    @Override
+    public double getAverageLookupProbes(){
+        return lookups == 0 ? 0 : (double) lookupProbes / lookups;
+    }
+
+    @Override
+    public long getPuts(){
+        return puts;
+    }
+
+    @Override
+    public double getAveragePutProbes(){
+        return puts == 0 ? 0 : (double) putProbes / puts;
+    }
+
+    @Override
+    public long getRehashes(){
+        return rehashes;
+    }
+
+    @Override
+    public long getLoadFactorNanos(){
+        return loadFactorNanos;
+    }
+
+    @Override
+    public int[] getChainLengthHistogram(){
+        return table.chainLengthHistogram();
+    }
+
+    @Override
+    public void reset(){
+        pendingProbes = lookups = lookupProbes = puts = putProbes = rehashes = loadFactorNanos = 0;
+    }
+
+    /**
+     * Method that counts keys compared by the operation in progress
+     * @param probes number of compared keys
+     */
+    void probe(int probes){
+        pendingProbes += probes;
+    }
+
+    /**
+     * Method that records a finished lookup along with the keys it compared
+     */
+    void recordLookup(){
+        lookups++;
+        lookupProbes += pendingProbes;
+        pendingProbes = 0;
+    }
+
+    /**
+     * Method that records a finished put along with the keys it compared
+     */
+    void recordPut(){
+        puts++;
+        putProbes += pendingProbes;
+        pendingProbes = 0;
+    }
+
+    /**
+     * Method that records a call to updateLoadFactor
+     * @param nanos time spent in the call
+     * @param rehashed whether the call started a rehash
+     */
+    void recordLoadFactor(long nanos, boolean rehashed){
+        loadFactorNanos += nanos;
+        if(rehashed)
+            rehashes++;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Interface exposing the metrics of a {@link HashTable} through JMX, implemented by {@link HashTableStats}
+ */
+public interface HashTableStatsMBean {
+
+    /**
+     * Method that returns the number of distinct keys in the table
+     * @return size
+     */
+    int getSize();
+
+    /**
+     * Method that returns the number of lookups made by get and getNode
+     * @return # of lookups
+     */
+    long getLookups();
+
+    /**
+     * Method that returns the average number of keys compared per lookup
+     * @return average probes
+     */
+    double getAverageLookupProbes();
+
+    /**
+     * Method that returns the number of calls to put
+     * @return # of puts
+     */
+    long getPuts();
+
+    /**
+     * Method that returns the average number of keys compared per put
+     * @return average probes
+     */
+    double getAveragePutProbes();
+
+    /**
+     * Method that returns the number of times the table was doubled
+     * @return # of rehashes
+     */
+    long getRehashes();
+
+    /**
+     * Method that returns the time spent in updateLoadFactor
+     * @return nanoseconds
+     */
+    long getLoadFactorNanos();
+
+    /**
+     * Method that returns the chain-length histogram of the table
+     * @return number of buckets holding 0, 1, 2, ... keys
+     */
+    int[] getChainLengthHistogram();
+
+    /**
+     * Method that sets every counter back to zero
+     */
+    void reset();
+}
@@ -0,0 +1,184 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Class representing a sequence of word ids stored as variable-length integers. Ids are handed out in order of first
+ * appearance, so the frequent words of a text tend to have small ids and most of the sequence takes one or two bytes
+ * per word instead of a reference per word
+ */
+public class IdSequence {
+    // Field that holds the encoded ids, seven bits per byte with the high bit set on every byte but the last
+    private byte[] bytes;
+
+    // Field containing the number of bytes in use
+    private int byteCount = 0;
+
+    // Field containing the number of ids in the sequence
+    private int length = 0;
+
+    /**
+     * Constructor that creates an empty sequence
+     */
+    public IdSequence(){
+        bytes = new byte[64];
+    }
+
+    /**
+     * Method that returns the number of ids in the sequence
+     * @return length
+     */
+    public int length(){
+        return length;
+    }
+
+    /**
+     * Method that appends an id to the sequence
+     * @param id non-negative id
+     */
+    public void add(int id){
+        // Checking to ensure parameter is valid
+        if(id < 0)
+            throw new IllegalArgumentException();
+        // Making room for the longest encoding of an int
+        if(byteCount + 5 > bytes.length)
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, byteCount + 5));
+        // Writing seven bits at a time, lowest bits first
+        while(id >= 0x80){
+            bytes[byteCount++] = (byte) (id | 0x80);
+            id >>>= 7;
+        }
+        bytes[byteCount++] = (byte) id;
+        length++;
+    }
+
+    /**
+     * Method that appends every id of another sequence after translating it through the given table, used to join
+     * sequences whose ids were handed out by different dictionaries
+     * @param other sequence to append
+     * @param remap new id of every id of the other sequence
+     */
+    public void addAll(IdSequence other, int[] remap){
+        PrimitiveIterator.OfInt it = other.iterator();
+        while(it.hasNext())
+            add(remap[it.nextInt()]);
+    }
+
+    /**
+     * Method that writes the sequence as its number of ids, its number of bytes and the encoded bytes themselves, so it
+     * can be read back without decoding a single id
+     * @param out output to write to
+     * @throws IOException Thrown in the event that the output cannot be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(length);
+        out.writeInt(byteCount);
+        out.write(bytes, 0, byteCount);
+    }
+
+    /**
+     * Method that reads a sequence written by write, advancing the buffer past it. The ids are decoded once to check
+     * that the bytes hold exactly the announced number of whole ids, each below the given bound
+     * @param buffer buffer positioned at the sequence
+     * @param bound number of distinct ids, every id read being below it
+     * @return sequence read
+     */
+    public static IdSequence read(ByteBuffer buffer, int bound){
+        IdSequence sequence = new IdSequence();
+        sequence.length = buffer.getInt();
+        sequence.byteCount = buffer.getInt();
+        // Checking that the header matches what is left of the buffer
+        if(sequence.length < 0 || sequence.byteCount < sequence.length || sequence.byteCount > buffer.remaining())
+            throw new IllegalArgumentException("corrupt id sequence");
+        sequence.bytes = new byte[Math.max(sequence.byteCount, 64)];
+        buffer.get(sequence.bytes, 0, sequence.byteCount);
+        // Decoding every id, so a sequence cut inside an id or holding an unknown id is rejected here
+        int count = 0;
+        for(int position = 0; position < sequence.byteCount; count++){
+            long id = 0;
+            int shift = 0;
+            byte b;
+            do {
+                // An id longer than five bytes or running past the last byte is not one write produced
+                if(position == sequence.byteCount || shift > 28)
+                    throw new IllegalArgumentException("corrupt id sequence");
+                b = sequence.bytes[position++];
+                id |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while(b < 0);
+            if(id >= bound)
+                throw new IllegalArgumentException("corrupt id sequence");
+        }
+        if(count != sequence.length)
+            throw new IllegalArgumentException("corrupt id sequence");
+        return sequence;
+    }
+
+    /**
+     * Method that returns an iterator over the ids in order, without boxing them
+     * @return iterator over the ids
+     */
+    public PrimitiveIterator.OfInt iterator(){
+        return new PrimitiveIterator.OfInt() {
+            // Index of the next byte to decode
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < byteCount;
+            }
+
+            @Override
+            public int nextInt() {
+                if(!hasNext())
+                    throw new NoSuchElementException();
+                // Reading seven bits at a time until a byte without the high bit
+                int id = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    id |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while(b < 0);
+                return id;
+            }
+        };
+    }
+
+    /**
+     * Method that returns an iterator over the ids from the last to the first, without boxing them. The last byte of
+     * every encoded id is the only one without the high bit, which is what lets the sequence be walked backwards
+     * @return iterator over the ids in reverse order
+     */
+    public PrimitiveIterator.OfInt reverseIterator(){
+        return new PrimitiveIterator.OfInt() {
+            // Index one past the last byte of the next id to decode
+            private int position = byteCount;
+
+            @Override
+            public boolean hasNext() {
+                return position > 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if(!hasNext())
+                    throw new NoSuchElementException();
+                // Stepping back to the first byte of the id
+                int end = position;
+                position--;
+                while(position > 0 && bytes[position - 1] < 0)
+                    position--;
+                // Reading seven bits at a time from the first byte
+                int id = 0;
+                for(int i = position, shift = 0; i < end; i++, shift += 7)
+                    id |= (bytes[i] & 0x7F) << shift;
+                return id;
+            }
+        };
+    }
+}
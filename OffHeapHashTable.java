@@ -0,0 +1,392 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Class representing an open-addressing hash table for counting words whose keys live outside the heap. Like
+ * {@link OpenHashTable} it probes an array of ints and keeps occurrences in a dense array indexed by id, but instead of
+ * a String per key the UTF-8 bytes of every key are appended to an arena of direct ByteBuffers, and each id only holds
+ * the offset and length of its bytes in primitive arrays. The heap therefore holds a handful of arrays whatever the
+ * number of keys, none of which the garbage collector has to trace, so pauses do not grow with the vocabulary.
+ * <p>
+ * Keys are written once and never moved, so the arena only grows: like the word tables of WordStat, this table has no
+ * remove. A String is only created when a key is asked for by getKey or forEach
+ */
+public class OffHeapHashTable {
+    // Marker stored in a slot that holds no key
+    private static final int EMPTY = 0;
+
+    // Sizes of the first arena chunk and of the largest ones, chunks doubling in between and a key longer than the
+    // largest size getting a chunk of its own
+    private static final int FIRST_CHUNK = 1 << 12, CHUNK_SIZE = 1 << 22;
+
+    // Field that holds, for every slot, the id of the key stored there plus one (EMPTY if the slot is free)
+    private int[] slots;
+
+    // Field that holds the cached hash of the key in every slot, compared before the key itself to skip mismatches
+    private int[] hashes;
+
+    // Field that holds where the bytes of every key start, the chunk in the high half and the position in the low half
+    private long[] offsets;
+
+    // Field that holds the number of bytes of every key, indexed by id
+    private int[] lengths;
+
+    // Field that holds the number of times each key has been inputted, indexed by id
+    private int[] occurrences;
+
+    // Field that holds the chunks of the arena, every one a direct buffer outside the heap
+    private final ArrayList<ByteBuffer> arena = new ArrayList<>();
+
+    // Field containing the number of distinct keys in the table, which is also the next id
+    private int size = 0;
+
+    // Field containing the number of bits used to index the slot array
+    private int bits;
+
+    // Field that holds the UTF-8 bytes of the key being looked up, reused between calls
+    private byte[] scratch = new byte[64];
+
+    // Field that holds the seed of the hash function of this table
+    private final long seed = ThreadLocalRandom.current().nextLong();
+
+    /**
+     * Constructor that creates an off-heap hash table with a default capacity of 512
+     */
+    public OffHeapHashTable(){
+        this(512);
+    }
+
+    /**
+     * Constructor that creates an off-heap hash table able to hold the given number of keys before resizing
+     * @param capacity of hash table
+     */
+    public OffHeapHashTable(int capacity){
+        // Throws exception if input is not valid
+        if(capacity < 0)
+            throw new IllegalArgumentException();
+        // Keeping the load factor at or below 0.5 so probe sequences stay short
+        bits = 1;
+        while((1 << bits) < capacity * 2L && bits < 30)
+            bits++;
+        slots = new int[1 << bits];
+        hashes = new int[1 << bits];
+        offsets = new long[Math.max(capacity, 1)];
+        lengths = new int[Math.max(capacity, 1)];
+        occurrences = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Method that returns the number of distinct keys in the table
+     * @return size
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Method that returns the number of bytes of keys held outside the heap, counting whole chunks
+     * @return size of the arena in bytes
+     */
+    public long arenaBytes(){
+        long bytes = 0;
+        for(ByteBuffer chunk : arena)
+            bytes += chunk.capacity();
+        return bytes;
+    }
+
+    /**
+     * Method that adds an occurrence of the given key, inserting it if it is not present yet
+     * @param key given key to add
+     */
+    public void put(String key){
+        put(key, 1);
+    }
+
+    /**
+     * Method that adds the given number of occurrences of a key, inserting it if it is not present yet
+     * @param key given key to add
+     * @param count number of occurrences to add
+     * @return id of the key
+     */
+    public int put(String key, int count){
+        return add(encode(key), count);
+    }
+
+    /**
+     * Method that adds an occurrence of a key given as a slice of a character buffer, encoding it into a reused buffer
+     * so that no object is created, even the first time the key is inserted
+     * @param buffer buffer holding the key
+     * @param offset index of the first character of the key
+     * @param length number of characters in the key
+     * @return id of the key
+     */
+    public int put(char[] buffer, int offset, int length){
+        return add(encode(buffer, offset, length), 1);
+    }
+
+    /**
+     * Method that returns the number of times the key with the given id has been inputted
+     * @param id id handed out by put
+     * @return occurrences of the key
+     */
+    public int getOccurrences(int id){
+        // Checking to ensure the id is in use
+        if(id < 0 || id >= size)
+            throw new NoSuchElementException();
+        return occurrences[id];
+    }
+
+    /**
+     * Method that returns the number of times the given key has been inputted
+     * @param key given key
+     * @return occurrences of the key
+     */
+    public int getOccurrences(String key){
+        return occurrences[getId(key)];
+    }
+
+    /**
+     * Method that returns the id of the given key. Ids are dense, from 0 to size() - 1 in order of first insertion
+     * @param key given key
+     * @return id of the key
+     */
+    public int getId(String key){
+        int id = idOf(key);
+        // Only reachable if no such element is present in table
+        if(id < 0)
+            throw new NoSuchElementException();
+        return id;
+    }
+
+    /**
+     * Method that returns the id of a key. Unlike getId a missing key is not an error, so callers expecting mostly
+     * misses pay no exception for them
+     * @param key given key
+     * @return id of the key or -1 if it is not present
+     */
+    public int idOf(String key){
+        int length = encode(key);
+        int i = find(length, hash(length));
+        return i < 0 ? -1 : slots[i] - 1;
+    }
+
+    /**
+     * Method that returns the id of a key given as a slice of a character buffer without creating any object
+     * @param buffer buffer holding the key
+     * @param offset index of the first character of the key
+     * @param length number of characters in the key
+     * @return id of the key or -1 if it is not present
+     */
+    public int idOf(char[] buffer, int offset, int length){
+        int bytes = encode(buffer, offset, length);
+        int i = find(bytes, hash(bytes));
+        return i < 0 ? -1 : slots[i] - 1;
+    }
+
+    /**
+     * Method that returns whether the given key is present in the table
+     * @param key given key
+     * @return true if the key is present
+     */
+    public boolean contains(String key){
+        return idOf(key) >= 0;
+    }
+
+    /**
+     * Method that returns the key with the given id, decoding it from the arena
+     * @param id id handed out by put
+     * @return key with that id
+     */
+    public String getKey(int id){
+        // Checking to ensure the id is in use
+        if(id < 0 || id >= size)
+            throw new NoSuchElementException();
+        byte[] bytes = new byte[lengths[id]];
+        arena.get((int) (offsets[id] >>> 32)).get((int) offsets[id], bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Method that passes every key and its occurrences to the given action, in the order the keys were first inserted
+     * @param action action to perform on every key
+     */
+    public void forEach(ObjIntConsumer<String> action){
+        for(int id = 0; id < size; id++)
+            action.accept(getKey(id), occurrences[id]);
+    }
+
+    /**
+     * Private helper that encodes a key into the scratch buffer as UTF-8
+     * @param key given key
+     * @return number of bytes written
+     */
+    private int encode(String key){
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > scratch.length)
+            scratch = new byte[Math.max(bytes.length, scratch.length * 2)];
+        System.arraycopy(bytes, 0, scratch, 0, bytes.length);
+        return bytes.length;
+    }
+
+    /**
+     * Private helper that encodes a slice of a character buffer into the scratch buffer as UTF-8, copying ASCII
+     * characters directly so the usual word needs no encoder
+     * @param buffer buffer holding the key
+     * @param offset index of the first character of the key
+     * @param length number of characters in the key
+     * @return number of bytes written
+     */
+    private int encode(char[] buffer, int offset, int length){
+        if(length > scratch.length)
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        for(int j = 0; j < length; j++){
+            char c = buffer[offset + j];
+            // A character outside ASCII takes several bytes, so the slice goes through the encoder instead
+            if(c >= 0x80)
+                return encode(new String(buffer, offset, length));
+            scratch[j] = (byte) c;
+        }
+        return length;
+    }
+
+    /**
+     * Private helper that adds occurrences of the key in the scratch buffer, copying it to the arena if it is new
+     * @param length number of bytes of the key
+     * @param count number of occurrences to add
+     * @return id of the key
+     */
+    private int add(int length, int count){
+        int hash = hash(length);
+        int i = find(length, hash);
+        if(i >= 0){
+            // Key found, only its count needs to change
+            occurrences[slots[i] - 1] += count;
+            return slots[i] - 1;
+        }
+        // Free slot reached by the probe, encoded as -slot - 1
+        i = -i - 1;
+        int id = size;
+        if(id == occurrences.length){
+            offsets = Arrays.copyOf(offsets, id * 2);
+            lengths = Arrays.copyOf(lengths, id * 2);
+            occurrences = Arrays.copyOf(occurrences, id * 2);
+        }
+        offsets[id] = allocate(length);
+        lengths[id] = length;
+        occurrences[id] = count;
+        slots[i] = id + 1;
+        hashes[i] = hash;
+        size++;
+        // Doubling the slot array once it is half full
+        if(size * 2 > slots.length)
+            resize();
+        return id;
+    }
+
+    /**
+     * Private helper that copies the key in the scratch buffer to the end of the arena
+     * @param length number of bytes of the key
+     * @return chunk and position of the copy
+     */
+    private long allocate(int length){
+        ByteBuffer chunk = arena.isEmpty() ? null : arena.get(arena.size() - 1);
+        // Starting a new chunk when the key does not fit in the last one, so no key spans two chunks
+        if(chunk == null || chunk.remaining() < length){
+            int capacity = arena.size() >= 10 ? CHUNK_SIZE : Math.min(CHUNK_SIZE, FIRST_CHUNK << arena.size());
+            chunk = ByteBuffer.allocateDirect(Math.max(capacity, length));
+            arena.add(chunk);
+        }
+        long offset = ((long) (arena.size() - 1) << 32) | chunk.position();
+        chunk.put(scratch, 0, length);
+        return offset;
+    }
+
+    /**
+     * Private helper that returns the slot holding the key in the scratch buffer
+     * @param length number of bytes of the key
+     * @param hash hash of the key
+     * @return slot of the key, or -slot - 1 of the free slot where the probe ended if it is not present
+     */
+    private int find(int length, int hash){
+        int mask = slots.length - 1;
+        // Probing from the home slot until the key or a free slot is found
+        for(int i = home(hash); ; i = (i + 1) & mask){
+            int slot = slots[i];
+            if(slot == EMPTY)
+                return -i - 1;
+            if(hashes[i] == hash && matches(slot - 1, length))
+                return i;
+        }
+    }
+
+    /**
+     * Private helper that compares the key of an id with the key in the scratch buffer
+     * @param id id of a key in the arena
+     * @param length number of bytes of the other key
+     * @return true if both keys hold the same bytes
+     */
+    private boolean matches(int id, int length){
+        if(lengths[id] != length)
+            return false;
+        ByteBuffer chunk = arena.get((int) (offsets[id] >>> 32));
+        int position = (int) offsets[id];
+        for(int j = 0; j < length; j++){
+            if(chunk.get(position + j) != scratch[j])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Private helper that returns the seeded hash of the key in the scratch buffer. Every byte is mixed into a 64-bit
+     * state started from the seed of the table, then the state is folded so every bit of the result depends on every
+     * byte
+     * @param length number of bytes of the key
+     * @return hash of the key
+     */
+    private int hash(int length){
+        long h = seed;
+        for(int j = 0; j < length; j++)
+            h = (h ^ (scratch[j] & 0xFF)) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Private helper that returns the home slot of a hash, multiplying by the golden ratio so that similar hashes are
+     * spread across the whole table instead of forming clusters
+     * @param hash hash of a key
+     * @return home slot
+     */
+    private int home(int hash){
+        return (hash * 0x9E3779B9) >>> (32 - bits);
+    }
+
+    /**
+     * Private helper that doubles the slot array, reusing the cached hashes so no key is hashed again
+     */
+    private void resize(){
+        int[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        bits++;
+        slots = new int[oldSlots.length * 2];
+        hashes = new int[oldSlots.length * 2];
+        int mask = slots.length - 1;
+        // Parses the old slots and places every key at the first free slot from its new home
+        for(int j = 0; j < oldSlots.length; j++){
+            if(oldSlots[j] != EMPTY){
+                int i = home(oldHashes[j]);
+                while(slots[i] != EMPTY)
+                    i = (i + 1) & mask;
+                slots[i] = oldSlots[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,508 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Class representing an open-addressing hash table specialized for counting words. Unlike {@link HashTable} no node is
+ * allocated per entry: keys and occurrences live in dense primitive arrays indexed by an id, and the probe array only
+ * holds ints so that linear probing walks contiguous memory. Keys are hashed with a random seed chosen per table, since
+ * keys sharing a String.hashCode are easy to craft and would otherwise all probe the same cluster
+ */
+public class OpenHashTable {
+    // Marker stored in a slot that holds no key
+    private static final int EMPTY = 0;
+
+    // Field that holds, for every slot, the id of the key stored there plus one (EMPTY if the slot is free)
+    private int[] slots;
+
+    // Field that holds the cached hash of the key in every slot, compared before the key itself to skip mismatches
+    private int[] hashes;
+
+    // Field that holds the keys, indexed by id
+    private String[] keys;
+
+    // Field that holds the number of times each key has been inputted, indexed by id
+    private int[] occurrences;
+
+    // Field that holds ids released by remove so they can be handed out again
+    private int[] freeIds = new int[0];
+
+    // Field containing the number of released ids in freeIds
+    private int freeCount = 0;
+
+    // Field containing the next id that has never been handed out
+    private int nextId = 0;
+
+    // Field containing the number of distinct keys in the table
+    private int size = 0;
+
+    // Field containing the number of bits used to index the slot array
+    private int bits;
+
+    // Field containing the number of times the slot array was doubled
+    private int resizes = 0;
+
+    // Field that holds the seed of the hash function of this table
+    private final long seed;
+
+    /**
+     * Constructor that creates an open-addressing hash table with a default capacity of 512
+     */
+    public OpenHashTable(){
+        this(512);
+    }
+
+    /**
+     * Constructor that creates an open-addressing hash table able to hold the given number of keys before resizing
+     * @param capacity of hash table
+     */
+    public OpenHashTable(int capacity){
+        // Throws exception if input is not valid
+        if(capacity < 0)
+            throw new IllegalArgumentException();
+        // Keeping the load factor at or below 0.5 so probe sequences stay short
+        bits = 1;
+        while((1 << bits) < capacity * 2L && bits < 30)
+            bits++;
+        slots = new int[1 << bits];
+        hashes = new int[1 << bits];
+        keys = new String[Math.max(capacity, 1)];
+        occurrences = new int[Math.max(capacity, 1)];
+        seed = ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Private constructor that copies another table, keeping its seed so the cached hashes stay valid
+     * @param other table to copy
+     */
+    private OpenHashTable(OpenHashTable other){
+        slots = other.slots.clone();
+        hashes = other.hashes.clone();
+        keys = Arrays.copyOf(other.keys, Math.max(other.nextId, 1));
+        occurrences = Arrays.copyOf(other.occurrences, Math.max(other.nextId, 1));
+        freeIds = Arrays.copyOf(other.freeIds, other.freeCount);
+        freeCount = other.freeCount;
+        nextId = other.nextId;
+        size = other.size;
+        bits = other.bits;
+        resizes = other.resizes;
+        seed = other.seed;
+    }
+
+    /**
+     * Method that returns an independent copy of the table, with the same keys, ids and occurrences. Keys are shared
+     * since Strings never change
+     * @return copy of the table
+     */
+    public OpenHashTable copy(){
+        return new OpenHashTable(this);
+    }
+
+    /**
+     * Method that returns the number of distinct keys in the table
+     * @return size
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Method that returns the number of times the slot array was doubled since the table was created
+     * @return # of resizes
+     */
+    public int resizes(){
+        return resizes;
+    }
+
+    /**
+     * Method that returns the number of keys by the number of slots a lookup of them compares, read from the current
+     * layout of the slots so that counting words pays nothing for it. Long entries point at clusters of keys sharing
+     * home slots, which is what makes some inputs slow to count
+     * @return array whose entry p is the number of keys found after comparing p slots, from 0 to the longest probe
+     */
+    public int[] probeLengthHistogram(){
+        int[] histogram = new int[2];
+        int mask = slots.length - 1;
+        // Parses every used slot, a key being as many slots past its home as its probe compares minus one
+        for(int i = 0; i < slots.length; i++){
+            if(slots[i] == EMPTY)
+                continue;
+            int length = ((i - home(hashes[i])) & mask) + 1;
+            if(length >= histogram.length)
+                histogram = Arrays.copyOf(histogram, Math.max(length + 1, histogram.length * 2));
+            histogram[length]++;
+        }
+        // Trimming the histogram to the longest probe
+        int longest = histogram.length - 1;
+        while(longest > 1 && histogram[longest] == 0)
+            longest--;
+        return Arrays.copyOf(histogram, longest + 1);
+    }
+
+    /**
+     * Method that adds an occurrence of the given key, inserting it if it is not present yet
+     * @param key given key to add
+     */
+    public void put(String key){
+        put(key, 1);
+    }
+
+    /**
+     * Method that adds the given number of occurrences of a key, inserting it if it is not present yet. Used to merge
+     * tables counted separately
+     * @param key given key to add
+     * @param count number of occurrences to add
+     * @return id of the key
+     */
+    public int put(String key, int count){
+        // Hash is computed once and reused for the probe and the comparisons
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        // Probing from the home slot until the key or a free slot is found
+        for(int i = home(hash); ; i = (i + 1) & mask){
+            int slot = slots[i];
+            // Free slot reached, so the key is new
+            if(slot == EMPTY)
+                return insert(i, hash, key, count);
+            // Key found, only its count needs to change
+            if(hashes[i] == hash && keys[slot - 1].equals(key)){
+                occurrences[slot - 1] += count;
+                return slot - 1;
+            }
+        }
+    }
+
+    /**
+     * Method that adds an occurrence of a key given as a slice of a character buffer, so that a key already in the table
+     * is counted without creating a String. A String is only created the first time the key is inserted
+     * @param buffer buffer holding the key
+     * @param offset index of the first character of the key
+     * @param length number of characters in the key
+     * @return id of the key
+     */
+    public int put(char[] buffer, int offset, int length){
+        // Computing the same hash a String key would get so both kinds of keys meet in the same slots
+        int hash = hash(buffer, offset, length);
+        int mask = slots.length - 1;
+        // Probing from the home slot until the key or a free slot is found
+        for(int i = home(hash); ; i = (i + 1) & mask){
+            int slot = slots[i];
+            // Free slot reached, so the key is new and needs its String
+            if(slot == EMPTY)
+                return insert(i, hash, new String(buffer, offset, length), 1);
+            // Key found, only its count needs to change
+            if(hashes[i] == hash && matches(keys[slot - 1], buffer, offset, length)){
+                occurrences[slot - 1]++;
+                return slot - 1;
+            }
+        }
+    }
+
+    /**
+     * Method that returns the number of times the key with the given id has been inputted
+     * @param id id handed out by put
+     * @return occurrences of the key
+     */
+    public int getOccurrences(int id){
+        // Checking to ensure the id is in use
+        if(id < 0 || id >= nextId || keys[id] == null)
+            throw new NoSuchElementException();
+        return occurrences[id];
+    }
+
+    /**
+     * Method that returns the id of the given key. Ids are dense, from 0 to size() - 1 in order of first insertion, for
+     * as long as nothing is removed from the table
+     * @param key given key
+     * @return id of the key
+     */
+    public int getId(String key){
+        // Locating the slot of the key
+        int i = find(key);
+        // Only reachable if no such element is present in table
+        if(i < 0)
+            throw new NoSuchElementException();
+        return slots[i] - 1;
+    }
+
+    /**
+     * Method that returns the id of a key. Unlike getId a missing key is not an error, so callers expecting mostly
+     * misses pay no exception for them
+     * @param key given key
+     * @return id of the key or -1 if it is not present
+     */
+    public int idOf(String key){
+        int i = find(key);
+        return i < 0 ? -1 : slots[i] - 1;
+    }
+
+    /**
+     * Method that returns whether the given key is present in the table
+     * @param key given key
+     * @return true if the key is present
+     */
+    public boolean contains(String key){
+        return find(key) >= 0;
+    }
+
+    /**
+     * Method that returns the id of a key given as a slice of a character buffer without creating a String. Unlike
+     * getId a missing key is not an error, since callers probe for keys that are usually absent
+     * @param buffer buffer holding the key
+     * @param offset index of the first character of the key
+     * @param length number of characters in the key
+     * @return id of the key or -1 if it is not present
+     */
+    public int idOf(char[] buffer, int offset, int length){
+        int hash = hash(buffer, offset, length);
+        int mask = slots.length - 1;
+        // Probing from the home slot until the key or a free slot is found
+        for(int i = home(hash); ; i = (i + 1) & mask){
+            int slot = slots[i];
+            if(slot == EMPTY)
+                return -1;
+            if(hashes[i] == hash && matches(keys[slot - 1], buffer, offset, length))
+                return slot - 1;
+        }
+    }
+
+    /**
+     * Method that returns the key with the given id
+     * @param id id handed out by put
+     * @return key with that id
+     */
+    public String getKey(int id){
+        // Checking to ensure the id is in use
+        if(id < 0 || id >= nextId || keys[id] == null)
+            throw new NoSuchElementException();
+        return keys[id];
+    }
+
+    /**
+     * Method that returns the number of times the given key has been inputted
+     * @param key given key
+     * @return occurrences of the key
+     */
+    public int getOccurrences(String key){
+        // Locating the slot of the key
+        int i = find(key);
+        // Only reachable if no such element is present in table
+        if(i < 0)
+            throw new NoSuchElementException();
+        return occurrences[slots[i] - 1];
+    }
+
+    /**
+     * Method that removes the given key from the table
+     * @param key given key to remove
+     * @return the number of occurrences the removed key had
+     */
+    public int remove(String key){
+        // Locating the slot of the key
+        int i = find(key);
+        // Only reachable if no such element is present in table
+        if(i < 0)
+            throw new NoSuchElementException();
+        // Releasing the id of the key
+        int id = slots[i] - 1;
+        int removed = occurrences[id];
+        keys[id] = null;
+        occurrences[id] = 0;
+        if(freeCount == freeIds.length)
+            freeIds = Arrays.copyOf(freeIds, Math.max(8, freeCount * 2));
+        freeIds[freeCount++] = id;
+        // Closing the gap so that no later key becomes unreachable
+        shiftBack(i);
+        size--;
+        return removed;
+    }
+
+    /**
+     * Method that removes one occurrence of the key with the given id, removing the key itself once it has none left
+     * @param id id handed out by put
+     * @return the number of occurrences left, 0 if the key was removed
+     */
+    public int decrement(int id){
+        // Checking to ensure the id is in use
+        if(id < 0 || id >= nextId || keys[id] == null)
+            throw new NoSuchElementException();
+        if(occurrences[id] > 1)
+            return --occurrences[id];
+        // Last occurrence, so the key leaves the table and its id is released
+        remove(keys[id]);
+        return 0;
+    }
+
+    /**
+     * Method that passes every key and its occurrences to the given action, in the order the keys were first inserted
+     * (ids released by remove are reused, so that order only holds for tables nothing was removed from)
+     * @param action action to perform on every key
+     */
+    public void forEach(ObjIntConsumer<String> action){
+        // Parses the dense arrays skipping released ids
+        for(int id = 0; id < nextId; id++){
+            if(keys[id] != null)
+                action.accept(keys[id], occurrences[id]);
+        }
+    }
+
+    /**
+     * Private helper that returns the slot holding the given key
+     * @param key given key
+     * @return slot of the key or -1 if it is not present
+     */
+    private int find(String key){
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        // Probing from the home slot until the key or a free slot is found
+        for(int i = home(hash); ; i = (i + 1) & mask){
+            int slot = slots[i];
+            if(slot == EMPTY)
+                return -1;
+            if(hashes[i] == hash && keys[slot - 1].equals(key))
+                return i;
+        }
+    }
+
+    /**
+     * Private helper that returns the seeded hash of a key. Every character is mixed into a 64-bit state started from
+     * the seed of the table, then the state is folded so every bit of the result depends on every character
+     * @param key given key
+     * @return hash of the key
+     */
+    private int hash(String key){
+        long h = seed;
+        for(int j = 0; j < key.length(); j++)
+            h = (h ^ key.charAt(j)) * 0x9E3779B97F4A7C15L;
+        return fold(h);
+    }
+
+    /**
+     * Private helper that returns the seeded hash of a key given as a slice of a character buffer, equal to the hash
+     * of the same key as a String
+     * @param buffer buffer holding the key
+     * @param offset index of the first character of the key
+     * @param length number of characters in the key
+     * @return hash of the key
+     */
+    private int hash(char[] buffer, int offset, int length){
+        long h = seed;
+        for(int j = offset; j < offset + length; j++)
+            h = (h ^ buffer[j]) * 0x9E3779B97F4A7C15L;
+        return fold(h);
+    }
+
+    /**
+     * Private helper that folds a 64-bit hash state into an int
+     * @param h hash state
+     * @return hash
+     */
+    private static int fold(long h){
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Private helper that compares a key with a slice of a character buffer
+     * @param key key stored in the table
+     * @param buffer buffer holding the other key
+     * @param offset index of the first character of the other key
+     * @param length number of characters in the other key
+     * @return true if both keys hold the same characters
+     */
+    private static boolean matches(String key, char[] buffer, int offset, int length){
+        if(key.length() != length)
+            return false;
+        for(int j = 0; j < length; j++){
+            if(key.charAt(j) != buffer[offset + j])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Private helper that returns the home slot of a hash, multiplying by the golden ratio so that similar hashes are
+     * spread across the whole table instead of forming clusters
+     * @param hash hash of a key
+     * @return home slot
+     */
+    private int home(int hash){
+        return (hash * 0x9E3779B9) >>> (32 - bits);
+    }
+
+    /**
+     * Private helper that stores a new key in a free slot
+     * @param i free slot found by the probe
+     * @param hash hash of the key
+     * @param key given key
+     * @param count occurrences the key starts with
+     * @return id given to the key
+     */
+    private int insert(int i, int hash, String key, int count){
+        // Reusing a released id when possible, otherwise handing out a new one
+        int id;
+        if(freeCount > 0)
+            id = freeIds[--freeCount];
+        else {
+            id = nextId++;
+            if(id == keys.length){
+                keys = Arrays.copyOf(keys, id * 2);
+                occurrences = Arrays.copyOf(occurrences, id * 2);
+            }
+        }
+        keys[id] = key;
+        occurrences[id] = count;
+        slots[i] = id + 1;
+        hashes[i] = hash;
+        size++;
+        // Doubling the slot array once it is half full
+        if(size * 2 > slots.length)
+            resize();
+        return id;
+    }
+
+    /**
+     * Private helper that moves the keys following a removed slot back so every key stays reachable from its home slot
+     * @param gap slot that was just emptied
+     */
+    private void shiftBack(int gap){
+        int mask = slots.length - 1;
+        slots[gap] = EMPTY;
+        // Parses the cluster following the gap
+        for(int i = (gap + 1) & mask; slots[i] != EMPTY; i = (i + 1) & mask){
+            int home = home(hashes[i]);
+            // A key may only move back if the gap lies between its home slot and its current slot
+            if(((i - home) & mask) >= ((i - gap) & mask)){
+                slots[gap] = slots[i];
+                hashes[gap] = hashes[i];
+                slots[i] = EMPTY;
+                gap = i;
+            }
+        }
+    }
+
+    /**
+     * Private helper that doubles the slot array, reusing the cached hashes so no key is hashed again
+     */
+    private void resize(){
+        int[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        bits++;
+        resizes++;
+        slots = new int[oldSlots.length * 2];
+        hashes = new int[oldSlots.length * 2];
+        int mask = slots.length - 1;
+        // Parses the old slots and places every key at the first free slot from its new home
+        for(int j = 0; j < oldSlots.length; j++){
+            if(oldSlots[j] != EMPTY){
+                int i = home(oldHashes[j]);
+                while(slots[i] != EMPTY)
+                    i = (i + 1) & mask;
+                slots[i] = oldSlots[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Class representing a bounded cache of query results, evicting the least recently used result once it holds its
+ * capacity. Results are keyed by the query and its arguments, and copied in and out so that callers changing the
+ * array they got back do not change the cached one. Methods are synchronized so queries on several threads share it
+ */
+public class QueryCache {
+    // Field containing the largest number of results kept
+    private final int capacity;
+
+    // Field that holds the results in access order, the least recently used first
+    private final LinkedHashMap<Key, String[]> results;
+
+    // Fields containing the number of queries answered from the cache and the number that were not
+    private long hits = 0, misses = 0;
+
+    /**
+     * Constructor that creates an empty cache
+     * @param capacity largest number of results kept
+     */
+    public QueryCache(int capacity){
+        // Throws exception if input is not valid
+        if(capacity < 1)
+            throw new IllegalArgumentException();
+        this.capacity = capacity;
+        results = new LinkedHashMap<Key, String[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String[]> eldest){
+                return size() > QueryCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Method that returns the cached result of a query
+     * @param query index of the query in WordStatStats
+     * @param k number of words asked for
+     * @param baseWord base word of a collocation query, null otherwise
+     * @param precede direction of a collocation query, false otherwise
+     * @return copy of the result, or null if it is not cached
+     */
+    public synchronized String[] get(int query, int k, String baseWord, boolean precede){
+        String[] words = results.get(new Key(query, k, baseWord, precede));
+        if(words == null){
+            misses++;
+            return null;
+        }
+        hits++;
+        return words.clone();
+    }
+
+    /**
+     * Method that caches the result of a query, evicting the least recently used result if the cache is full
+     * @param query index of the query in WordStatStats
+     * @param k number of words asked for
+     * @param baseWord base word of a collocation query, null otherwise
+     * @param precede direction of a collocation query, false otherwise
+     * @param words result of the query, copied
+     */
+    public synchronized void put(int query, int k, String baseWord, boolean precede, String[] words){
+        results.put(new Key(query, k, baseWord, precede), words.clone());
+    }
+
+    /**
+     * Method that drops every cached result, since they no longer hold once words are added
+     */
+    public synchronized void clear(){
+        results.clear();
+    }
+
+    /**
+     * Method that returns the number of cached results
+     * @return size
+     */
+    public synchronized int size(){
+        return results.size();
+    }
+
+    /**
+     * Method that returns the number of queries answered from the cache
+     * @return # of hits
+     */
+    public synchronized long hits(){
+        return hits;
+    }
+
+    /**
+     * Method that returns the number of queries that were not cached
+     * @return # of misses
+     */
+    public synchronized long misses(){
+        return misses;
+    }
+
+    /**
+     * Class representing a query and its arguments
+     */
+    private static class Key {
+        // Fields that hold the query and its arguments
+        private final int query, k;
+        private final String baseWord;
+        private final boolean precede;
+
+        /**
+         * Constructor that creates the key of a query
+         * @param query index of the query in WordStatStats
+         * @param k number of words asked for
+         * @param baseWord base word of a collocation query, null otherwise
+         * @param precede direction of a collocation query, false otherwise
+         */
+        private Key(int query, int k, String baseWord, boolean precede){
+            this.query = query;
+            this.k = k;
+            this.baseWord = baseWord;
+            this.precede = precede;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return query == other.query && k == other.k && precede == other.precede
+                    && Objects.equals(baseWord, other.baseWord);
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(query, k, baseWord, precede);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.Arrays;
+
+/**
+ * Class representing the Space-Saving summary of the most common words of a stream, monitoring at most a fixed number
+ * of words. A word that is not monitored once the summary is full takes the place of the least counted monitored word
+ * and inherits its count plus one, so counts never fall below the true count.
+ * <p>
+ * With capacity m and N words added, every count exceeds the true count by at most the smallest monitored count, itself
+ * at most N / m. Any word occurring more than N / m times is therefore always monitored, and the words reported as most
+ * common are exact whenever the gap between their counts is larger than that bound
+ */
+public class SpaceSaving {
+    // Field containing the largest number of monitored words
+    private final int capacity;
+
+    // Field that holds an open-addressing hashtable of the monitored words and their counts, ids reused on replacement
+    private final OpenHashTable table;
+
+    // Fields that hold the ids of the monitored words in a min-heap by count, and the slot of every id in the heap
+    private final int[] heap, heapIndex;
+
+    /**
+     * Constructor that creates an empty summary
+     * @param capacity largest number of monitored words
+     */
+    public SpaceSaving(int capacity){
+        // Throws exception if input is not valid
+        if(capacity < 1)
+            throw new IllegalArgumentException();
+        this.capacity = capacity;
+        table = new OpenHashTable(capacity);
+        heap = new int[capacity];
+        heapIndex = new int[capacity];
+        Arrays.fill(heapIndex, -1);
+    }
+
+    /**
+     * Method that returns the number of monitored words
+     * @return size
+     */
+    public int size(){
+        return table.size();
+    }
+
+    /**
+     * Method that adds an occurrence of a word given as a slice of a character buffer. A String is only created when the
+     * word starts being monitored
+     * @param buffer buffer holding the word
+     * @param offset index of the first character of the word
+     * @param length number of characters in the word
+     */
+    public void add(char[] buffer, int offset, int length){
+        int size = table.size();
+        if(size < capacity || table.idOf(buffer, offset, length) >= 0){
+            // Room left or the word is already monitored, so it is counted in the table
+            int id = table.put(buffer, offset, length);
+            if(heapIndex[id] < 0){
+                heap[size] = id;
+                heapIndex[id] = size;
+                siftUp(size);
+            } else
+                siftDown(heapIndex[id]);
+            return;
+        }
+        // The word replaces the least counted one, inheriting its count
+        int min = heap[0];
+        int count = table.remove(table.getKey(min));
+        heapIndex[min] = -1;
+        int id = table.put(new String(buffer, offset, length), count + 1);
+        heap[0] = id;
+        heapIndex[id] = 0;
+        siftDown(0);
+    }
+
+    /**
+     * Method that returns an upper bound on the number of occurrences of a word: its count if it is monitored, otherwise
+     * the smallest monitored count, or 0 while the summary is not full since every word seen is then monitored
+     * @param word given word
+     * @return upper bound on its occurrences
+     */
+    public int count(String word){
+        char[] chars = word.toCharArray();
+        int id = table.idOf(chars, 0, chars.length);
+        if(id >= 0)
+            return table.getOccurrences(id);
+        return table.size() < capacity ? 0 : table.getOccurrences(heap[0]);
+    }
+
+    /**
+     * Method that returns the number of monitored words counted strictly more than the given count
+     * @param count given count
+     * @return number of monitored words above it
+     */
+    public int countAbove(int count){
+        int above = 0;
+        for(int i = 0; i < table.size(); i++){
+            if(table.getOccurrences(heap[i]) > count)
+                above++;
+        }
+        return above;
+    }
+
+    /**
+     * Method that returns the k monitored words with the largest counts
+     * @param k number of words to return, at most size()
+     * @return Array in descending order of count
+     */
+    public String[] top(int k){
+        // Ranking the monitored ids by count, the heap being a small fixed-size array
+        int size = table.size();
+        int[] counts = new int[size];
+        int[] ids = new int[size];
+        for(int i = 0; i < size; i++){
+            ids[i] = heap[i];
+            counts[i] = table.getOccurrences(ids[i]);
+        }
+        int[] top = new WordRanking(counts, size).mostCommon(k);
+        String[] words = new String[k];
+        for(int i = 0; i < k; i++)
+            words[i] = table.getKey(ids[top[i]]);
+        return words;
+    }
+
+    /**
+     * Private helper that moves a heap entry up while its count is smaller than its parent's
+     * @param i slot of the entry
+     */
+    private void siftUp(int i){
+        while(i > 0){
+            int parent = (i - 1) >>> 1;
+            if(table.getOccurrences(heap[parent]) <= table.getOccurrences(heap[i]))
+                return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Private helper that moves a heap entry down while its count is larger than one of its children's
+     * @param i slot of the entry
+     */
+    private void siftDown(int i){
+        int size = table.size();
+        while(true){
+            int smallest = i;
+            int left = 2 * i + 1, right = left + 1;
+            if(left < size && table.getOccurrences(heap[left]) < table.getOccurrences(heap[smallest]))
+                smallest = left;
+            if(right < size && table.getOccurrences(heap[right]) < table.getOccurrences(heap[smallest]))
+                smallest = right;
+            if(smallest == i)
+                return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    /**
+     * Private helper that swaps two heap entries
+     * @param i first slot
+     * @param j second slot
+     */
+    private void swap(int i, int j){
+        int a = heap[i];
+        heap[i] = heap[j];
+        heap[j] = a;
+        heapIndex[heap[i]] = i;
+        heapIndex[heap[j]] = j;
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * Interface for consumers of the normalized words found by {@link Tokenizer}. Words are handed over as a slice of a
+ * buffer the tokenizer reuses for the next word, so a consumer that needs to keep a word must copy it, for example by
+ * creating a String only the first time it sees the word
+ */
+public interface TokenSink {
+
+    /**
+     * Method that receives the next normalized word
+     * @param buffer buffer holding the word, only valid until this method returns
+     * @param offset index of the first character of the word
+     * @param length number of characters in the word
+     */
+    void token(char[] buffer, int offset, int length);
+}
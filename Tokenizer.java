@@ -1,8 +1,19 @@
-import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * Class that parses through an input stream of characters and normalizes them
@@ -10,34 +21,65 @@ import java.util.ArrayList;
  */
 public class Tokenizer {
 
+    // Largest byte range boundaries() hands out, so that a range always fits in one buffer
+    private static final long MAX_RANGE = 1L << 30;
+
+    // Classes of the ASCII lookup table used by the mapped mode
+    private static final byte SEPARATOR = 0, LETTER = 1, JOINER = 2;
+
+    // Lookup table giving the class of every ASCII byte
+    private static final byte[] ASCII = new byte[128];
+
+    static {
+        for(char c = 0; c < 128; c++)
+            ASCII[c] = Character.isLetter(c) ? LETTER : isSeparator(c) ? SEPARATOR : JOINER;
+    }
+
     // Holds our array list of words
     private ArrayList<String> words = new ArrayList<>();
 
+    // Holds the buffer the current word is built in, reused for every word
+    private char[] buffer = new char[32];
+
+    // Holds the number of characters of the current word
+    private int length = 0;
+
+    // Holds the consumer every word is handed to
+    private TokenSink sink;
+
     /**
      * Constructor that parses all normalized words in a .txt file and
      * adds them to an array list
      * @param file directory
      */
     public Tokenizer(String file) throws IOException {
-        // Initializing a new FileReader to parse the .txt file
-        FileReader reader = new FileReader(file);
-        // Initializing a new StringBuilder used to add the normalized words to the array list
-        StringBuilder sb = new StringBuilder();
-        // Parses through the file character by character while we have not reached the end of the file
-        while(reader.ready()){
-            // Saves the current character
-            char save = (char)reader.read();
-            // If letter add its lowercase version
-            if(Character.isLetter(save))
-                sb.append(Character.toLowerCase(save));
-            // If not an abridging character and the string builder is not empty add the word and and create a new string builder
-            else if (save != '\'' && save != '-' && !sb.toString().equals("")) {
-                words.add(sb.toString());
-                sb = new StringBuilder();
-            }
-        }
-        // Adding any final words
-        words.add(sb.toString());
+        this(file, false);
+    }
+
+    /**
+     * Constructor that parses all normalized words in a .txt file, optionally through a memory mapping of the file.
+     * The mapped mode classifies ASCII bytes with a lookup table and only decodes UTF-8 when it meets a non-ASCII byte.
+     * It is only taken when the default charset is UTF-8, the file being read like FileReader does otherwise, so both
+     * modes always give the same words
+     * @param file directory
+     * @param mapped whether to read the file through a memory mapping
+     */
+    public Tokenizer(String file, boolean mapped) throws IOException {
+        sink = this::collect;
+        parseFile(file, mapped);
+    }
+
+    /**
+     * Constructor that parses the normalized words in a byte range of a .txt file. The range must start at the beginning
+     * of the file or right after a separator (see {@link #boundaries(String, int)}), and the final word is only added
+     * when the range reaches the end of the file, so consecutive ranges yield exactly the words of the whole file
+     * @param file directory
+     * @param start first byte of the range
+     * @param end byte after the last byte of the range
+     */
+    public Tokenizer(String file, long start, long end) throws IOException {
+        sink = this::collect;
+        parseRange(file, start, end);
     }
 
     /**
@@ -46,26 +88,318 @@ public class Tokenizer {
      * @param text String array
      */
     public Tokenizer(String[] text) throws IOException {
+        sink = this::collect;
+        parseText(text);
+    }
+
+    /**
+     * Private constructor that creates a tokenizer handing every word to the given consumer instead of the word list
+     * @param sink consumer of the words
+     */
+    private Tokenizer(TokenSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Method that hands every normalized word of a .txt file to the given consumer without materializing them, producing
+     * the same words as {@link #Tokenizer(String, boolean)}
+     * @param file directory
+     * @param mapped whether to read the file through a memory mapping
+     * @param sink consumer of the words
+     */
+    public static void tokenize(String file, boolean mapped, TokenSink sink) throws IOException {
+        new Tokenizer(sink).parseFile(file, mapped);
+    }
+
+    /**
+     * Method that hands every normalized word of a byte range of a .txt file to the given consumer without
+     * materializing them, producing the same words as {@link #Tokenizer(String, long, long)}
+     * @param file directory
+     * @param start first byte of the range
+     * @param end byte after the last byte of the range
+     * @param sink consumer of the words
+     */
+    public static void tokenize(String file, long start, long end, TokenSink sink) throws IOException {
+        new Tokenizer(sink).parseRange(file, start, end);
+    }
+
+    /**
+     * Method that hands every normalized word of a stream of characters to the given consumer as the stream is read, so
+     * memory does not grow with the length of the input. The end of the stream is treated like the end of a file
+     * @param reader stream of characters, left open
+     * @param sink consumer of the words
+     */
+    public static void tokenize(Reader reader, TokenSink sink) throws IOException {
+        new Tokenizer(sink).parseReader(reader);
+    }
+
+    /**
+     * Method that returns an iterator over the normalized words of a stream of characters, reading the stream lazily as
+     * words are requested. The end of the stream is treated like the end of a file
+     * @param reader stream of characters, left open
+     * @return iterator over the words, throwing UncheckedIOException if the stream cannot be read
+     */
+    public static Iterator<String> iterator(Reader reader) {
+        return new WordIterator(reader);
+    }
+
+    /**
+     * Method that hands every normalized word of an array to the given consumer without materializing them, producing
+     * the same words as {@link #Tokenizer(String[])}
+     * @param text String array
+     * @param sink consumer of the words
+     */
+    public static void tokenize(String[] text, TokenSink sink) {
+        new Tokenizer(sink).parseText(text);
+    }
+
+    /**
+     * Method that splits a .txt file into roughly equal byte ranges that can be parsed independently. Every boundary is
+     * placed right after an ASCII separator byte, which can never be part of a word or of a multi-byte character, so
+     * the file is never cut inside a word
+     * @param file directory
+     * @param parts number of ranges wanted
+     * @return sorted offsets, starting with 0 and ending with the file length, each pair delimiting a range
+     */
+    public static long[] boundaries(String file, int parts) throws IOException {
+        // Checking to ensure parameter is valid
+        if(parts < 1)
+            throw new IllegalArgumentException();
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            long length = channel.size();
+            // Keeping every range small enough to be read into a single buffer
+            parts = (int) Math.max(parts, length / MAX_RANGE + 1);
+            long[] bounds = new long[parts + 1];
+            int count = 1;
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            for(int i = 1; i < parts; i++){
+                // Scanning forward from the even split point to the next separator
+                long position = Math.max(length * i / parts, bounds[count - 1]);
+                long boundary = length;
+                scan:
+                while(position < length){
+                    buffer.clear();
+                    int read = channel.read(buffer, position);
+                    if(read <= 0)
+                        break;
+                    for(int j = 0; j < read; j++){
+                        byte b = buffer.get(j);
+                        if(b >= 0 && isSeparator((char) b)){
+                            boundary = position + j + 1;
+                            break scan;
+                        }
+                    }
+                    position += read;
+                }
+                // Skipping split points that collapse onto the previous boundary or the end of the file
+                if(boundary > bounds[count - 1] && boundary < length)
+                    bounds[count++] = boundary;
+            }
+            bounds[count++] = length;
+            return Arrays.copyOf(bounds, count);
+        }
+    }
+
+    /**
+     * Private helper that parses a whole .txt file, either through a FileReader or through a memory mapping
+     * @param file directory
+     * @param mapped whether to read the file through a memory mapping, ignored unless the default charset is UTF-8
+     */
+    private void parseFile(String file, boolean mapped) throws IOException {
+        // Taking the mapped fast path only when it decodes like FileReader
+        if(mapped && Charset.defaultCharset().equals(StandardCharsets.UTF_8)) {
+            try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+                parseMapped(channel, 0, channel.size(), true);
+            }
+            return;
+        }
+        // Initializing a new FileReader to parse the .txt file
+        try (FileReader reader = new FileReader(file)) {
+            parseReader(reader);
+        }
+    }
+
+    /**
+     * Private helper that parses a stream of characters, read a block at a time
+     * @param reader stream of characters
+     */
+    private void parseReader(Reader reader) throws IOException {
+        char[] chars = new char[8192];
+        int read;
+        // Parses through the stream character by character until we have reached its end
+        while((read = reader.read(chars)) >= 0){
+            for(int i = 0; i < read; i++)
+                accept(chars[i]);
+        }
+        // Adding any final words
+        sink.token(buffer, 0, length);
+    }
+
+    /**
+     * Private helper that parses a byte range of a .txt file
+     * @param file directory
+     * @param start first byte of the range
+     * @param end byte after the last byte of the range
+     */
+    private void parseRange(String file, long start, long end) throws IOException {
+        // Reading the range with the same charset FileReader would use
+        CharBuffer chars;
+        long size;
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            size = channel.size();
+            // Taking the mapped fast path when it decodes like FileReader
+            if(Charset.defaultCharset().equals(StandardCharsets.UTF_8)) {
+                parseMapped(channel, start, end, end >= size);
+                return;
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+            while(bytes.hasRemaining() && channel.read(bytes, start + bytes.position()) >= 0);
+            bytes.flip();
+            chars = Charset.defaultCharset().decode(bytes);
+        }
+        // Parses through the range character by character
+        while(chars.hasRemaining())
+            accept(chars.get());
+        // Adding any final words, only at the end of the file as FileReader input does
+        if(end >= size)
+            sink.token(buffer, 0, length);
+    }
+
+    /**
+     * Private helper that parses all strings of an array, every string ending its last word
+     * @param text String array
+     */
+    private void parseText(String[] text) {
         // Parses through all strings in passed in array
         for(String string : text){
-            // Creates a new StringBuilder to hold normalized words
-            StringBuilder sb = new StringBuilder();
-            // Creates a new BufferedReader by passing in the current string through a StringReader
-            BufferedReader reader = new BufferedReader(new StringReader(string));
             // Parses through all letters in a string
-            for(int i = 0; i < string.length()+1; i++){
-                // Saves the current character
-                char save = (char)reader.read();
-                // If letter add its lowercase version
-                if(Character.isLetter(save))
-                    sb.append(Character.toLowerCase(save));
-                    // If not an abridging character and the string builder is not empty add the word and and create a new string builder
-                else if (save != '\'' && save != '-' && !sb.toString().equals("")) {
-                    words.add(sb.toString());
-                    sb = new StringBuilder();
+            for(int i = 0; i < string.length(); i++)
+                accept(string.charAt(i));
+            // Adding the final word of the string
+            if(length > 0)
+                flush();
+        }
+    }
+
+    /**
+     * Private helper that parses the normalized words in a byte range of a UTF-8 file through memory mappings of at most
+     * MAX_RANGE bytes. A character is only decoded when its first byte is not ASCII, and malformed or supplementary
+     * sequences count as separators, exactly like the replacement and surrogate characters FileReader would produce
+     * @param channel channel of the file
+     * @param start first byte of the range
+     * @param end byte after the last byte of the range
+     * @param last whether the range ends the file, in which case the final word is added even if it is empty
+     */
+    private void parseMapped(FileChannel channel, long start, long end, boolean last) throws IOException {
+        long position = start;
+        while(position < end){
+            // Mapping the next window of the range
+            int limit = (int) Math.min(end - position, MAX_RANGE);
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, limit);
+            int i = 0;
+            while(i < limit){
+                int b = bytes.get(i);
+                // ASCII bytes are classified through the lookup table
+                if(b >= 0){
+                    byte type = ASCII[b];
+                    if(type == LETTER)
+                        append((char) (b | 0x20));
+                    else if(type == SEPARATOR && length > 0)
+                        flush();
+                    i++;
+                    continue;
                 }
+                // Only two and three byte sequences can decode to a letter, anything else is a separator
+                int count = (b & 0xE0) == 0xC0 ? 2 : (b & 0xF0) == 0xE0 ? 3 : 1;
+                // Remapping from this character if it is cut by the end of the window
+                if(i + count > limit && position + limit < end)
+                    break;
+                char c = count == 1 || i + count > limit ? '\uFFFD' : decode(bytes, i, count);
+                if(c == '\uFFFD')
+                    count = 1;
+                if(Character.isLetter(c))
+                    append(Character.toLowerCase(c));
+                else if(length > 0)
+                    flush();
+                i += count;
             }
+            position += i;
         }
+        // Adding any final words, only at the end of the file as FileReader input does
+        if(last)
+            sink.token(buffer, 0, length);
+    }
+
+    /**
+     * Private helper that decodes a two or three byte UTF-8 sequence, rejecting the same overlong forms, encoded
+     * surrogates and broken continuation bytes Java's UTF-8 decoder rejects
+     * @param bytes mapped bytes
+     * @param i index of the first byte
+     * @param count length of the sequence
+     * @return decoded character or the replacement character if the sequence is malformed
+     */
+    private static char decode(MappedByteBuffer bytes, int i, int count){
+        int b1 = bytes.get(i) & 0xFF;
+        int b2 = bytes.get(i + 1) & 0xFF;
+        if((b2 & 0xC0) != 0x80)
+            return '\uFFFD';
+        if(count == 2)
+            return b1 < 0xC2 ? '\uFFFD' : (char) (((b1 & 0x1F) << 6) | (b2 & 0x3F));
+        int b3 = bytes.get(i + 2) & 0xFF;
+        if((b3 & 0xC0) != 0x80)
+            return '\uFFFD';
+        char c = (char) (((b1 & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+        return c < 0x800 || Character.isSurrogate(c) ? '\uFFFD' : c;
+    }
+
+    /**
+     * Private helper that applies the normalization rules to one character
+     * @param c character
+     */
+    private void accept(char c){
+        // If letter add its lowercase version
+        if(Character.isLetter(c))
+            append(Character.toLowerCase(c));
+        // If not an abridging character and the current word is not empty hand it over and start a new one
+        else if(isSeparator(c) && length > 0)
+            flush();
+    }
+
+    /**
+     * Private helper that adds a character to the current word, growing the buffer if needed
+     * @param c lowercase letter
+     */
+    private void append(char c){
+        if(length == buffer.length)
+            buffer = Arrays.copyOf(buffer, length * 2);
+        buffer[length++] = c;
+    }
+
+    /**
+     * Private helper that hands the current word to the consumer and starts a new one in the same buffer
+     */
+    private void flush(){
+        sink.token(buffer, 0, length);
+        length = 0;
+    }
+
+    /**
+     * Private helper used as the consumer of the constructors, adding every word to the word list
+     * @param chars buffer holding the word
+     * @param offset index of the first character of the word
+     * @param count number of characters in the word
+     */
+    private void collect(char[] chars, int offset, int count){
+        words.add(new String(chars, offset, count));
+    }
+
+    /**
+     * Private helper that states whether a character ends a word: anything but a letter or an abridging character
+     * @param c character
+     * @return true if c separates words
+     */
+    private static boolean isSeparator(char c){
+        return !Character.isLetter(c) && c != '\'' && c != '-';
     }
 
     /**
@@ -75,4 +409,65 @@ public class Tokenizer {
     public ArrayList<String> wordList() {
         return words;
     }
+
+    /**
+     * Private nested class that pulls words out of a stream of characters one at a time
+     */
+    private static class WordIterator implements Iterator<String> {
+
+        // Field that holds the stream being read
+        private final Reader reader;
+
+        // Field that holds the block of characters read last
+        private final char[] chars = new char[8192];
+
+        // Fields that hold the next character to parse and the number of characters in the block
+        private int position = 0, limit = 0;
+
+        // Field that states whether the end of the stream has been reached
+        private boolean ended = false;
+
+        // Field that holds the word found but not yet returned
+        private String next;
+
+        // Field that holds the tokenizer applying the normalization rules, storing every word it finds in next
+        private final Tokenizer tokenizer = new Tokenizer((buffer, offset, length) -> next = new String(buffer, offset, length));
+
+        // Constructor that creates an iterator over the given stream
+        WordIterator(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            // Parsing characters until a word is completed or the stream ends
+            while(next == null && !ended){
+                if(position == limit){
+                    try {
+                        limit = reader.read(chars);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    position = 0;
+                    // Adding any final words
+                    if(limit < 0){
+                        ended = true;
+                        tokenizer.sink.token(tokenizer.buffer, 0, tokenizer.length);
+                    }
+                    continue;
+                }
+                tokenizer.accept(chars[position++]);
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if(!hasNext())
+                throw new NoSuchElementException();
+            String word = next;
+            next = null;
+            return word;
+        }
+    }
 }
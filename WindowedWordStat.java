@@ -0,0 +1,222 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.LongSupplier;
+
+/**
+ * Class that gives the statistics of {@link WordStat} over a sliding window of a stream that never ends, such as a log
+ * being tailed: only the last N words, the words of the last T milliseconds, or both, are counted. Every word entering
+ * the window is counted, and every word leaving it is uncounted, its key being removed from the table once its count
+ * reaches zero, so memory follows the window rather than the whole stream.
+ * <p>
+ * Words are kept in a ring buffer of ids in the order they arrived and their counts grouped in
+ * {@link FrequencyBuckets} without ranks, so adding a word and expiring one are both O(1) amortized, and wordCount and
+ * mostCommonWords are answered from the current window without rebuilding anything. Methods are synchronized, so one
+ * thread can feed the stream while others query it
+ */
+public class WindowedWordStat {
+    // Field containing the largest number of words in the window, Integer.MAX_VALUE if unbounded
+    private final int maxTokens;
+
+    // Field containing the age in milliseconds after which a word leaves the window, Long.MAX_VALUE if unbounded
+    private final long maxAgeMillis;
+
+    // Field that holds the clock giving the time of every word in milliseconds
+    private final LongSupplier clock;
+
+    // Field that holds an open-addressing hashtable of the words in the window, ids released when a count reaches zero
+    private final OpenHashTable table = new OpenHashTable();
+
+    // Field that holds the words in the window grouped by count
+    private final FrequencyBuckets buckets = new FrequencyBuckets(false);
+
+    // Field that holds the ring buffer of the ids of the words in the window, oldest at head
+    private int[] window = new int[16];
+
+    // Field that holds the time every word in the ring buffer arrived, null if the window has no age limit
+    private long[] times;
+
+    // Fields containing the slot of the oldest word in the ring buffer and the number of words in it
+    private int head = 0, length = 0;
+
+    /**
+     * Constructor that creates an empty window measured in words
+     * @param maxTokens largest number of words in the window
+     */
+    public WindowedWordStat(int maxTokens){
+        this(maxTokens, 0, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor that creates an empty window measured in words, milliseconds, or both, timed by the system clock
+     * @param maxTokens largest number of words in the window, 0 for no limit
+     * @param maxAgeMillis age in milliseconds after which a word leaves the window, 0 for no limit
+     */
+    public WindowedWordStat(int maxTokens, long maxAgeMillis){
+        this(maxTokens, maxAgeMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor that creates an empty window measured in words, milliseconds, or both, timed by the given clock
+     * @param maxTokens largest number of words in the window, 0 for no limit
+     * @param maxAgeMillis age in milliseconds after which a word leaves the window, 0 for no limit
+     * @param clock clock giving the current time in milliseconds
+     */
+    public WindowedWordStat(int maxTokens, long maxAgeMillis, LongSupplier clock){
+        // Checking to ensure parameters are valid, a window without any limit never lets a word go
+        if(maxTokens < 0 || maxAgeMillis < 0 || (maxTokens == 0 && maxAgeMillis == 0) || clock == null)
+            throw new IllegalArgumentException();
+        this.maxTokens = maxTokens == 0 ? Integer.MAX_VALUE : maxTokens;
+        this.maxAgeMillis = maxAgeMillis == 0 ? Long.MAX_VALUE : maxAgeMillis;
+        this.clock = clock;
+        if(maxAgeMillis > 0)
+            times = new long[window.length];
+    }
+
+    /**
+     * Method that adds the words of an array of strings to the window
+     * @param text Array of string to parse
+     */
+    public synchronized void addText(String[] text){
+        Tokenizer.tokenize(text, this::add);
+    }
+
+    /**
+     * Method that adds the words of a stream of characters to the window as they are read, until the stream ends. The
+     * window is only locked while a word is counted, so queries can run while this waits on the stream
+     * @param reader stream of characters, left open
+     * @throws IOException Thrown in the event that the stream cannot be read
+     */
+    public void addStream(Reader reader) throws IOException {
+        Tokenizer.tokenize(reader, (buffer, offset, length) -> {
+            synchronized(this){
+                add(buffer, offset, length);
+            }
+        });
+    }
+
+    /**
+     * Method that returns the number of times the word is used in the window
+     * @param word the word to be searched for
+     * @return int # of times the word occurs in the window
+     */
+    public synchronized int wordCount(String word){
+        expire();
+        int id = table.idOf(word);
+        // Return 0 if the word isn't in the window
+        return id < 0 ? 0 : table.getOccurrences(id);
+    }
+
+    /**
+     * Method that returns the k most common words in the window
+     * @param k number of words to return
+     * @return Array in descending order of the k most common words
+     */
+    public synchronized String[] mostCommonWords(int k){
+        // Checking to ensure parameter is valid
+        if(k < 0)
+            // If not throw exception
+            throw new IllegalArgumentException();
+        expire();
+        // If k is too large change to the max
+        if(k > buckets.size())
+            k = buckets.size();
+        // Return the words of the k most common ids
+        int[] ids = buckets.mostCommon(k);
+        String[] words = new String[k];
+        for(int i = 0; i < k; i++)
+            words[i] = table.getKey(ids[i]);
+        return words;
+    }
+
+    /**
+     * Method that returns the number of distinct words in the window
+     * @return # of distinct words
+     */
+    public synchronized int distinctWords(){
+        expire();
+        return table.size();
+    }
+
+    /**
+     * Method that returns the number of words in the window
+     * @return # of words
+     */
+    public synchronized int size(){
+        expire();
+        return length;
+    }
+
+    /**
+     * Private helper that counts a word handed over by the tokenizer and lets the oldest words go if the window is full
+     * @param buffer buffer holding the word
+     * @param offset index of the first character of the word
+     * @param length number of characters in the word
+     */
+    private void add(char[] buffer, int offset, int length){
+        // The tokenizer flushes an empty word at the end of every stream, which is not part of the text
+        if(length == 0)
+            return;
+        long now = clock.getAsLong();
+        // Making room for the word first, so the ring buffer never holds more than the limit
+        if(this.length == maxTokens)
+            evict();
+        expire(now);
+        int id = table.put(buffer, offset, length);
+        buckets.increment(id);
+        if(this.length == window.length)
+            grow();
+        int tail = (head + this.length) & (window.length - 1);
+        window[tail] = id;
+        if(times != null)
+            times[tail] = now;
+        this.length++;
+    }
+
+    /**
+     * Private helper that lets go of the words older than the age limit
+     */
+    private void expire(){
+        if(times != null)
+            expire(clock.getAsLong());
+    }
+
+    /**
+     * Private helper that lets go of the words older than the age limit at the given time
+     * @param now current time in milliseconds
+     */
+    private void expire(long now){
+        if(times == null)
+            return;
+        while(length > 0 && now - times[head] >= maxAgeMillis)
+            evict();
+    }
+
+    /**
+     * Private helper that lets go of the oldest word in the window, removing it from the table if it was its last
+     * occurrence
+     */
+    private void evict(){
+        int id = window[head];
+        buckets.decrement(id);
+        table.decrement(id);
+        head = (head + 1) & (window.length - 1);
+        length--;
+    }
+
+    /**
+     * Private helper that doubles the ring buffer, moving the words so the oldest is in the first slot
+     */
+    private void grow(){
+        int[] ids = new int[window.length * 2];
+        long[] arrived = times == null ? null : new long[ids.length];
+        for(int i = 0; i < length; i++){
+            int slot = (head + i) & (window.length - 1);
+            ids[i] = window[slot];
+            if(arrived != null)
+                arrived[i] = times[slot];
+        }
+        window = ids;
+        times = arrived;
+        head = 0;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Class representing the words of a text ranked by how often they occur. Counts are bounded integers, so the words are
+ * ordered with stable passes of frequency buckets in linear time instead of a comparison sort: a single pass when the
+ * largest count fits in 16 bits, otherwise one pass over the low bits and one over the high bits. Words with equal
+ * counts stay in id order, which is the order they first appeared in
+ */
+public class WordRanking {
+    // Largest number of bits a single pass buckets on
+    private static final int PASS_BITS = 16;
+
+    // Field that holds the ids ordered by ascending count, ties in ascending id order
+    private final int[] order;
+
+    // Field that holds the rank of every id: one more than the number of ids with a strictly greater count
+    private final int[] ranks;
+
+    /**
+     * Constructor that ranks the given counts
+     * @param counts number of occurrences of every id
+     * @param size number of ids, counts[0] to counts[size - 1]
+     */
+    public WordRanking(int[] counts, int size){
+        // Checking to ensure parameter is valid
+        if(size < 0 || size > counts.length)
+            throw new IllegalArgumentException();
+        order = new int[size];
+        ranks = new int[size];
+        int max = 0;
+        for(int id = 0; id < size; id++){
+            order[id] = id;
+            max = Math.max(max, counts[id]);
+        }
+        // Sorting on every bit of the largest count, split in two passes if there are too many for one
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+        int[] buffer = new int[size];
+        if(bits <= PASS_BITS){
+            pass(counts, order, buffer, 0, bits);
+            System.arraycopy(buffer, 0, order, 0, size);
+        } else {
+            int low = (bits + 1) / 2;
+            pass(counts, order, buffer, 0, low);
+            pass(counts, buffer, order, low, bits - low);
+        }
+        // Parses the ids from the most common, a new rank starting whenever the count changes
+        int rank = 0;
+        for(int i = size - 1; i >= 0; i--){
+            if(i == size - 1 || counts[order[i]] != counts[order[i + 1]])
+                rank = size - i;
+            ranks[order[i]] = rank;
+        }
+    }
+
+    /**
+     * Method that returns the number of ranked ids
+     * @return size
+     */
+    public int size(){
+        return order.length;
+    }
+
+    /**
+     * Method that returns the rank of an id, 1 being the most common and equal counts sharing a rank
+     * @param id ranked id
+     * @return rank of the id
+     */
+    public int rank(int id){
+        return ranks[id];
+    }
+
+    /**
+     * Method that returns the k most common ids, equal counts in descending id order
+     * @param k number of ids to return, at most size()
+     * @return ids in descending order of count
+     */
+    public int[] mostCommon(int k){
+        int[] ids = new int[k];
+        for(int i = 0; i < k; i++)
+            ids[i] = order[order.length - 1 - i];
+        return ids;
+    }
+
+    /**
+     * Method that returns the k least common ids, equal counts in ascending id order
+     * @param k number of ids to return, at most size()
+     * @return ids in ascending order of count
+     */
+    public int[] leastCommon(int k){
+        int[] ids = new int[k];
+        System.arraycopy(order, 0, ids, 0, k);
+        return ids;
+    }
+
+    /**
+     * Private helper that stably distributes ids into frequency buckets on some bits of their counts
+     * @param counts number of occurrences of every id
+     * @param from ids to distribute
+     * @param to array receiving the ids ordered on those bits
+     * @param shift position of the lowest bit used
+     * @param bits number of bits used
+     */
+    private static void pass(int[] counts, int[] from, int[] to, int shift, int bits){
+        int mask = (1 << bits) - 1;
+        // Counting the ids of every bucket
+        int[] starts = new int[mask + 2];
+        for(int id : from)
+            starts[((counts[id] >>> shift) & mask) + 1]++;
+        // Turning the counts into the index each bucket starts at
+        for(int b = 0; b <= mask; b++)
+            starts[b + 1] += starts[b];
+        // Placing every id after the earlier ids of its bucket
+        for(int id : from)
+            to[starts[(counts[id] >>> shift) & mask]++] = id;
+    }
+}
@@ -1,24 +1,69 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.Collections;
-import java.util.NoSuchElementException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Class that reads a text file or array of strings and gives the user access to various statistics
  */
 public class WordStat {
 
-    // Field that holds a hashtable of words
-    private HashTable<String> table;
+    // Magic number opening every snapshot, "WSTA" in ASCII
+    private static final int SNAPSHOT_MAGIC = 0x57535441;
 
-    // Field that holds sorted nodes in order of occurrences
-    private ArrayList<HashTable.Node<String>> sortedNodes = new ArrayList<>();
+    // Version of the snapshot format written by save
+    private static final int SNAPSHOT_VERSION = 1;
 
-    // Field that has the ranks of each word as a hashtable where the element is the key's rank
-    private HashTable<Integer> rankedTable;
+    // Field that holds an open-addressing hashtable counting the words
+    private OpenHashTable table;
 
-    // Field that holds the tokenizer used to parse through the input
-    private Tokenizer tokenizer;
+    // Field that holds the word ids grouped by occurrences, null until the first ranked query and then kept up to date
+    // as words are added
+    private volatile FrequencyBuckets ranking;
+
+    // Field that holds the input as a sequence of word ids from the hashtable, null if the sequence was not kept
+    private IdSequence sequence;
+
+    // Field that holds the precomputed collocations of every word, null until indexCollocations is called
+    private CollocationIndex collocationIndex;
+
+    // Field that holds the time spent in every phase of building the statistics, indexed as in WordStatStats
+    private final long[] phaseNanos = new long[WordStatStats.PHASES];
+
+    // Field that holds the metrics of the statistics, null unless enableStats was called
+    private WordStatStats stats;
+
+    // Field that holds the recent results of the word list queries, null unless enableQueryCache was called
+    private volatile QueryCache cache;
+
+    // Field that holds the files of a corpus that could not be read, with the reason, in the order they were given
+    private Map<String, IOException> failures = Collections.emptyMap();
 
     /**
      * Constructor that initializes appropriate statistics
@@ -26,8 +71,41 @@ public class WordStat {
      * @throws IOException Thrown in the event that tokenizer cannot read the file
      */
     public WordStat(String file) throws IOException {
-        // Calling private helper to initialize
-        initialize(new Tokenizer(file));
+        this(file, false);
+    }
+
+    /**
+     * Constructor that initializes appropriate statistics, optionally parsing and counting the file in parallel. The
+     * parallel mode splits the file into ranges cut between words, parses and counts every range on the common
+     * ForkJoinPool and merges the counts in file order, so every statistic matches the sequential mode
+     * @param file File path of a txt file
+     * @param parallel whether to parse and count the file on several threads
+     * @throws IOException Thrown in the event that tokenizer cannot read the file
+     */
+    public WordStat(String file, boolean parallel) throws IOException {
+        long start = System.nanoTime();
+        if(!parallel) {
+            // Counting every word as it is parsed
+            IdSequence words = new IdSequence();
+            table = new OpenHashTable();
+            Tokenizer.tokenize(file, false, counter(table, words));
+            phaseNanos[WordStatStats.COUNT] += System.nanoTime() - start;
+            initialize(words);
+            return;
+        }
+        // Four ranges per thread so that uneven ranges still keep every thread busy
+        long[] bounds = Tokenizer.boundaries(file, ForkJoinPool.commonPool().getParallelism() * 4);
+        CountTask result;
+        try {
+            result = ForkJoinPool.commonPool().invoke(new CountTask(file, bounds, 0, bounds.length - 1));
+        } catch (UncheckedIOException e) {
+            // Rethrowing the exception a range failed to read with
+            throw e.getCause();
+        }
+        phaseNanos[WordStatStats.COUNT] += System.nanoTime() - start;
+        phaseNanos[WordStatStats.MERGE] += result.mergeNanos;
+        this.table = result.table;
+        initialize(result.words);
     }
 
     /**
@@ -36,8 +114,240 @@ public class WordStat {
      * @throws IOException Thrown in the event that tokenizer cannot read the array
      */
     public WordStat(String[] text) throws IOException {
-        // Calling private helper to initialize
-        initialize(new Tokenizer(text));
+        // Counting every word as it is parsed
+        long start = System.nanoTime();
+        IdSequence words = new IdSequence();
+        table = new OpenHashTable();
+        Tokenizer.tokenize(text, counter(table, words));
+        phaseNanos[WordStatStats.COUNT] += System.nanoTime() - start;
+        initialize(words);
+    }
+
+    /**
+     * Constructor that initializes appropriate statistics straight from a stream of characters, counting every word as
+     * it is read. Only the distinct words are kept unless the word sequence is buffered, which
+     * mostCommonCollocations needs
+     * @param reader stream of characters, left open
+     * @param keepWords whether to buffer the word sequence for mostCommonCollocations
+     * @throws IOException Thrown in the event that the stream cannot be read
+     */
+    public WordStat(Reader reader, boolean keepWords) throws IOException {
+        long start = System.nanoTime();
+        table = new OpenHashTable();
+        if(keepWords) {
+            // Counting every word and keeping it in order
+            IdSequence words = new IdSequence();
+            Tokenizer.tokenize(reader, counter(table, words));
+            phaseNanos[WordStatStats.COUNT] += System.nanoTime() - start;
+            initialize(words);
+        } else {
+            // Only counting the words
+            Tokenizer.tokenize(reader, (buffer, offset, length) -> table.put(buffer, offset, length));
+            phaseNanos[WordStatStats.COUNT] += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Constructor that initializes appropriate statistics over a corpus of files, as if the files were read one after the
+     * other. Every file is parsed and counted into its own table by a task of its own, on a virtual thread when the
+     * runtime has them and on a pool of concurrency platform threads otherwise, so waiting for one file overlaps with
+     * counting others. The tables are merged in the given order as they complete, and a file is only started once the
+     * file 2 * concurrency before it is merged, so a slow file holds at most that many tables in memory however large
+     * the corpus. A file that cannot be read is left out and reported by failures instead of aborting the corpus
+     * @param files File paths of the txt files, in order
+     * @param concurrency largest number of files read at the same time
+     * @throws IOException Thrown in the event that the thread is interrupted while waiting for the files
+     */
+    public WordStat(List<String> files, int concurrency) throws IOException {
+        // Checking to ensure parameter is valid
+        if(concurrency < 1)
+            throw new IllegalArgumentException();
+        long start = System.nanoTime();
+        ExecutorService executor = executor(concurrency);
+        Map<String, IOException> failed = new LinkedHashMap<>();
+        IdSequence words = new IdSequence();
+        table = new OpenHashTable();
+        try {
+            // Keeping a window of files started ahead of the next one to merge, the semaphore holding back all but
+            // concurrency of them, so files that completed early wait for their turn without piling up
+            Semaphore permits = new Semaphore(concurrency);
+            ArrayDeque<Future<FileCount>> counts = new ArrayDeque<>();
+            int window = 2 * concurrency, submitted = 0;
+            // Merging in file order while later files are still being read
+            long merge = 0;
+            for(int i = 0; i < files.size(); i++){
+                while(submitted < files.size() && submitted < i + window){
+                    String file = files.get(submitted++);
+                    counts.add(executor.submit(() -> FileCount.count(file, permits)));
+                }
+                FileCount count = counts.poll().get();
+                if(count.failure != null){
+                    failed.put(files.get(i), count.failure);
+                    continue;
+                }
+                long mergeStart = System.nanoTime();
+                int[] remap = new int[count.table.size()];
+                for(int id = 0; id < remap.length; id++){
+                    String word = count.table.getKey(id);
+                    remap[id] = table.put(word, count.table.getOccurrences(word));
+                }
+                words.addAll(count.words, remap);
+                merge += System.nanoTime() - mergeStart;
+            }
+            phaseNanos[WordStatStats.MERGE] += merge;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while reading the corpus");
+        } catch (ExecutionException e) {
+            // Failures to read are caught by the tasks, so anything else is a bug worth propagating as is
+            Throwable cause = e.getCause();
+            if(cause instanceof Error)
+                throw (Error) cause;
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            // A task interrupted while waiting for a permit abandons the corpus like an interrupted caller does
+            if(cause instanceof InterruptedException){
+                InterruptedIOException interrupted = new InterruptedIOException("interrupted while reading the corpus");
+                interrupted.initCause(cause);
+                throw interrupted;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        failures = Collections.unmodifiableMap(failed);
+        phaseNanos[WordStatStats.COUNT] += System.nanoTime() - start;
+        initialize(words);
+    }
+
+    /**
+     * Method that lists the regular files under a directory and its subdirectories, sorted by path, as input for the
+     * corpus constructor
+     * @param directory path of the directory
+     * @return File paths of the files
+     * @throws IOException Thrown in the event that the directory cannot be listed
+     */
+    public static List<String> listFiles(String directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(Paths.get(directory))) {
+            return paths.filter(Files::isRegularFile).map(Path::toString).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Method that returns the files of the corpus that could not be read
+     * @return map from the path of every unread file to the reason, empty if every file was read or the statistics do
+     * not come from a corpus
+     */
+    public Map<String, IOException> failures(){
+        return failures;
+    }
+
+    /**
+     * Private constructor used by load, which fills in the fields itself
+     */
+    private WordStat() {
+    }
+
+    /**
+     * Method that loads statistics saved by save, mapping the file instead of reading it through a stream so that
+     * startup costs little more than inserting the vocabulary
+     * @param file File path of a snapshot
+     * @return statistics equal to the saved ones
+     * @throws IOException Thrown in the event that the file cannot be read or is not a valid snapshot
+     */
+    public static WordStat load(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            // A single mapping holds at most 2 GiB
+            if(channel.size() > Integer.MAX_VALUE)
+                throw new IOException("snapshot too large: " + file);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // Checking the header
+            if(buffer.remaining() < 16 || buffer.getInt() != SNAPSHOT_MAGIC)
+                throw new IOException("not a WordStat snapshot: " + file);
+            int version = buffer.getInt();
+            if(version != SNAPSHOT_VERSION)
+                throw new IOException("unsupported snapshot version " + version + ": " + file);
+            int size = buffer.getInt();
+            boolean hasSequence = buffer.getInt() != 0;
+            // Every word takes at least its count and length, so a larger size can only come from a corrupt header
+            if(size < 0 || size > buffer.remaining() / 8)
+                throw new IOException("corrupt snapshot: " + file);
+            // Inserting the words in id order so every word gets back its id
+            WordStat stat = new WordStat();
+            stat.table = new OpenHashTable(size);
+            byte[] bytes = new byte[64];
+            for(int id = 0; id < size; id++){
+                int count = buffer.getInt();
+                int length = buffer.getInt();
+                if(count < 1 || length < 0 || length > buffer.remaining())
+                    throw new IOException("corrupt snapshot: " + file);
+                if(length > bytes.length)
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                buffer.get(bytes, 0, length);
+                if(stat.table.put(new String(bytes, 0, length, StandardCharsets.UTF_8), count) != id)
+                    throw new IOException("corrupt snapshot: " + file);
+            }
+            // Copying the encoded word sequence once it is checked to hold only ids of the loaded words
+            if(hasSequence)
+                stat.sequence = IdSequence.read(buffer, size);
+            return stat;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // Thrown by a truncated file or an inconsistent header
+            throw new IOException("corrupt snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Method that saves the statistics to a versioned binary snapshot that load reads back exactly. The snapshot holds
+     * a header, every word in id order as its count and UTF-8 bytes, and the encoded word sequence if it was kept.
+     * Ranks are not stored since they are rebuilt from the counts in linear time
+     * @param file File path of the snapshot, overwritten if it exists
+     * @throws IOException Thrown in the event that the file cannot be written
+     */
+    public void save(String file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(table.size());
+            out.writeInt(sequence != null ? 1 : 0);
+            // Ids are dense since nothing is removed from the table
+            for(int id = 0; id < table.size(); id++){
+                byte[] bytes = table.getKey(id).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(table.getOccurrences(id));
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            if(sequence != null)
+                sequence.write(out);
+        }
+    }
+
+    /**
+     * Method that adds the words of a text file to the statistics, updating counts and ranks in place so the cost only
+     * depends on the new words. The collocation index and cached results are dropped, since they no longer hold
+     * @param file File path of a txt file
+     * @throws IOException Thrown in the event that tokenizer cannot read the file
+     */
+    public void addFile(String file) throws IOException {
+        long start = System.nanoTime();
+        Tokenizer.tokenize(file, false, updater());
+        phaseNanos[WordStatStats.COUNT] += System.nanoTime() - start;
+        collocationIndex = null;
+        clearCache();
+    }
+
+    /**
+     * Method that adds the words of an array of strings to the statistics, updating counts and ranks in place so the
+     * cost only depends on the new words. The collocation index and cached results are dropped, since they no longer
+     * hold
+     * @param text Array of string to parse
+     */
+    public void addText(String[] text){
+        long start = System.nanoTime();
+        Tokenizer.tokenize(text, updater());
+        phaseNanos[WordStatStats.COUNT] += System.nanoTime() - start;
+        collocationIndex = null;
+        clearCache();
     }
 
     /**
@@ -46,14 +356,30 @@ public class WordStat {
      * @return int # of times the word occurs
      */
     public int wordCount(String word){
-        // Used to catch a non-existent word
-        try {
-            // Returning the number of occurrences
-            return table.getNode(word).getOccurrences();
-        } catch (NoSuchElementException e){
-            // Return 0 if the word doesn't appear
-            return 0;
+        long start = startQuery();
+        // Looking the word up without an exception, since most words asked about may not occur
+        int id = table.idOf(word);
+        // Return 0 if the word doesn't appear
+        int count = id < 0 ? 0 : table.getOccurrences(id);
+        endQuery(WordStatStats.WORD_COUNT, start);
+        return count;
+    }
+
+    /**
+     * Method that returns the number of times each of the given words is used, in one pass over the batch
+     * @param words the words to be searched for
+     * @return # of times each word occurs, 0 for a word that never occurs, in the same order
+     */
+    public int[] wordCounts(String[] words){
+        long start = startQuery();
+        int[] counts = new int[words.length];
+        for(int i = 0; i < words.length; i++){
+            int id = table.idOf(words[i]);
+            counts[i] = id < 0 ? 0 : table.getOccurrences(id);
         }
+        // The whole batch is timed as one query
+        endQuery(WordStatStats.WORD_COUNT, start);
+        return counts;
     }
 
     /**
@@ -62,8 +388,41 @@ public class WordStat {
      * @return the word's "rank"
      */
     public int wordRank(String word){
-        // Returns the rank of the word
-        return rankedTable.get(word);
+        long start = startQuery();
+        try {
+            // Returns the rank of the word, throwing NoSuchElementException if it never occurs
+            int id = table.getId(word);
+            return ranking().rank(id);
+        } finally {
+            endQuery(WordStatStats.WORD_RANK, start);
+        }
+    }
+
+    /**
+     * Method that returns the "rank" of each of the given words, in one pass over the batch. Unlike wordRank a word
+     * that never occurs is not an error, so a batch of mostly absent words costs no exceptions
+     * @param words the words to find the "rank" of
+     * @return each word's "rank", 0 for a word that never occurs, in the same order
+     */
+    public int[] wordRanks(String[] words){
+        long start = startQuery();
+        FrequencyBuckets ranking = ranking();
+        int[] ranks = new int[words.length];
+        for(int i = 0; i < words.length; i++){
+            int id = table.idOf(words[i]);
+            ranks[i] = id < 0 ? 0 : ranking.rank(id);
+        }
+        // The whole batch is timed as one query
+        endQuery(WordStatStats.WORD_RANK, start);
+        return ranks;
+    }
+
+    /**
+     * Method that returns the number of distinct words
+     * @return # of distinct words
+     */
+    public int distinctWords(){
+        return table.size();
     }
 
     /**
@@ -76,22 +435,21 @@ public class WordStat {
         if(k < 0)
             // If not throw exception
             throw new IllegalArgumentException();
+        long start = startQuery();
         // If k is too large change to the max
-        if(k > sortedNodes.size())
-            k = sortedNodes.size();
-        // Local variable to index the return array
-        int index = 0;
-        // Return array
-        String[] temp = new String[k];
-        // Parses through the sorted last k sorted nodes
-        for(int i = sortedNodes.size()-1; i > sortedNodes.size()-1-k; i--){
-            // Adds the nodes to the array
-            temp[index] = sortedNodes.get(i).getKey();
-            // Increments the index of the return array
-            index++;
+        if(k > table.size())
+            k = table.size();
+        String[] words = cached(WordStatStats.MOST_COMMON, k, null, false);
+        if(words == null){
+            // Return the words of the k most common ids, the buckets being sorted in place by the walk
+            FrequencyBuckets ranking = ranking();
+            synchronized(ranking){
+                words = keys(ranking.mostCommon(k));
+            }
+            cache(WordStatStats.MOST_COMMON, k, null, false, words);
         }
-        // Return the array
-        return temp;
+        endQuery(WordStatStats.MOST_COMMON, start);
+        return words;
     }
 
     /**
@@ -104,22 +462,60 @@ public class WordStat {
         if(k < 0)
             // If not valid throw exception
             throw new IllegalArgumentException();
+        long start = startQuery();
         // If k is too large make it the number of distinct words
-        if(k > sortedNodes.size())
-            k = sortedNodes.size();
-        // Return array
-        String[] temp = new String[k];
-        // Index of the return array
-        int index = 0;
-        // Parses the sorted nodes in order
-        for(int i = 0; i < k; i++){
-            // Adds every distinct word in order
-            temp[index] = sortedNodes.get(i).getKey();
-            // Increments return array index
-            index++;
+        if(k > table.size())
+            k = table.size();
+        String[] words = cached(WordStatStats.LEAST_COMMON, k, null, false);
+        if(words == null){
+            // Return the words of the k least common ids, the buckets being sorted in place by the walk
+            FrequencyBuckets ranking = ranking();
+            synchronized(ranking){
+                words = keys(ranking.leastCommon(k));
+            }
+            cache(WordStatStats.LEAST_COMMON, k, null, false, words);
         }
-        // Return the array
-        return temp;
+        endQuery(WordStatStats.LEAST_COMMON, start);
+        return words;
+    }
+
+    /**
+     * Method that returns the words occurring from low to high times, for instance 1 and 1 for the words used once,
+     * in O(log M) for M the largest count plus the number of words returned, plus sorting any group of equally common
+     * words that went out of order since it was last walked
+     * @param low smallest number of occurrences, at least one
+     * @param high largest number of occurrences, at least low
+     * @return Array in ascending order of occurrences of the words in the range
+     */
+    public String[] wordsBetween(int low, int high){
+        // Checking to ensure parameters are valid
+        if(low < 1 || high < low)
+            throw new IllegalArgumentException();
+        long start = startQuery();
+        String[] words;
+        // Return the words of the ids in the range, the buckets being sorted in place by the walk
+        FrequencyBuckets ranking = ranking();
+        synchronized(ranking){
+            words = keys(ranking.between(low, high));
+        }
+        endQuery(WordStatStats.WORDS_BETWEEN, start);
+        return words;
+    }
+
+    /**
+     * Method that returns the number of distinct words occurring every number of times, read from the sizes of the
+     * ranked groups rather than from the words themselves
+     * @return array whose entry c is the number of words occurring c times, from 0 to the largest count
+     */
+    public int[] countHistogram(){
+        long start = startQuery();
+        int[] histogram;
+        FrequencyBuckets ranking = ranking();
+        synchronized(ranking){
+            histogram = ranking.histogram();
+        }
+        endQuery(WordStatStats.COUNT_HISTOGRAM, start);
+        return histogram;
     }
 
     /**
@@ -128,129 +524,378 @@ public class WordStat {
      * @param baseWord word to parse for
      * @param precede boolean representing if to precede or follow the base word
      * @return Array of the k most common collocations
+     * @throws IllegalStateException if this was built from a stream without keeping the word sequence
      */
     public String[] mostCommonCollocations(int k, String baseWord, boolean precede){
-        // Creating new hash-table, array list, and node list
-        HashTable<String> table = new HashTable<>();
-        ArrayList<String> list = new ArrayList<>();
-        ArrayList<HashTable.Node<String>> nodeList = new ArrayList<>();
+        // Checking that the word sequence was buffered
+        if(sequence == null)
+            throw new IllegalStateException("word sequence was not kept");
+        long start = startQuery();
+        String[] words = cached(WordStatStats.COLLOCATIONS, k, baseWord, precede);
+        if(words == null){
+            words = collocations(k, baseWord, precede);
+            cache(WordStatStats.COLLOCATIONS, k, baseWord, precede, words);
+        }
+        endQuery(WordStatStats.COLLOCATIONS, start);
+        return words;
+    }
+
+    /**
+     * Private helper that returns the most common words following or preceding the first instance of the base word,
+     * from the index if it is deep enough and otherwise by scanning the word sequence
+     * @param k number of words to return
+     * @param baseWord word to parse for
+     * @param precede boolean representing if to precede or follow the base word
+     * @return Array of the k most common collocations
+     */
+    private String[] collocations(int k, String baseWord, boolean precede){
+        // Id of the base word, -1 if it never occurs so that no word matches it
+        int baseId = table.idOf(baseWord);
+        // Answering from the index when it holds enough collocations
+        if(collocationIndex != null && k >= 0 && k <= collocationIndex.depth())
+            return keys(collocationIndex.collocations(k, baseId, precede));
+        // Counts of every id seen, and the distinct ids in the order they first appeared
+        int[] counts = new int[table.size()];
+        int[] order = new int[table.size()];
+        int distinct = 0;
         // Boolean to check if we have seen the base word
         boolean add = false;
-        // Parses the words in the input
-        for(String word : tokenizer.wordList()){
-            // If precede is true add until we reach the base word
+        // Parses the word ids of the input
+        PrimitiveIterator.OfInt it = sequence.iterator();
+        while(it.hasNext()){
+            int id = it.nextInt();
+            // If precede is true count until we reach the base word
             if(precede){
-                if(!word.equals(baseWord)){
-                    // Add the word to the hashtable and list
-                    table.put(word, word);
-                    list.add(word);
-                }
-                else
+                if(id == baseId)
                     break;
-            // If precede is false add after we have seen the base word
-            } else {
-                if(add){
-                    // Add the word to the hashtable and list
-                    table.put(word, word);
-                    list.add(word);
-                }
+            // If precede is false count after we have seen the base word
+            } else if(!add){
                 // Baseword found
-                if(word.equals(baseWord)){
-                    add = true;
-                }
-
+                add = id == baseId;
+                continue;
             }
+            // Count the word, remembering it the first time it is seen
+            if(counts[id]++ == 0)
+                order[distinct++] = id;
         }
-        // Parse the words after the base
-        for(String word : list) {
-            // Check if the word has already appeared
-            boolean dupe = false;
-            // Parses the hashtable to make sure it isn't duplicated
-            for(HashTable.Node<String> n : nodeList) {
-                if(n.getKey().equals(word)) {
-                    dupe = true;
-                    break;
+        // Ranking the distinct words by their counts, ties in the order they first appeared
+        int[] distinctCounts = new int[distinct];
+        for(int i = 0; i < distinct; i++)
+            distinctCounts[i] = counts[order[i]];
+        WordRanking collocations = new WordRanking(distinctCounts, distinct);
+        // Make sure k is not too large
+        if(k > distinct)
+            k = distinct;
+        // Return the words of the k most common collocations
+        int[] top = collocations.mostCommon(k);
+        for(int i = 0; i < k; i++)
+            top[i] = order[top[i]];
+        return keys(top);
+    }
+
+
+    /**
+     * Method that precomputes the collocations of every word, so that mostCommonCollocations answers any k up to the
+     * given depth by copying k words instead of scanning the input. Larger k still scan the input
+     * @param depth number of collocations kept per word and direction
+     * @throws IllegalStateException if this was built from a stream without keeping the word sequence
+     */
+    public void indexCollocations(int depth){
+        // Checking that the word sequence was buffered
+        if(sequence == null)
+            throw new IllegalStateException("word sequence was not kept");
+        long start = System.nanoTime();
+        collocationIndex = new CollocationIndex(sequence, table.size(), depth);
+        phaseNanos[WordStatStats.INDEX] += System.nanoTime() - start;
+    }
+
+    /**
+     * Method that starts timing every query, on top of the phase timings that are always kept. Until it is called the
+     * only cost is a null check per query
+     * @return metrics of the statistics, the same object on every call
+     */
+    public WordStatStats enableStats(){
+        if(stats == null)
+            stats = new WordStatStats(phaseNanos, table);
+        return stats;
+    }
+
+    /**
+     * Method that returns the metrics of the statistics
+     * @return metrics, or null if enableStats was never called
+     */
+    public WordStatStats stats(){
+        return stats;
+    }
+
+    /**
+     * Method that starts caching the results of mostCommonWords, leastCommonWords and mostCommonCollocations, so a
+     * query repeated with the same arguments is answered by copying its earlier result. The least recently used result
+     * is evicted once the cache is full, and every result is dropped when words are added
+     * @param capacity largest number of results kept
+     * @return cache of the results, replacing any earlier one
+     */
+    public QueryCache enableQueryCache(int capacity){
+        cache = new QueryCache(capacity);
+        return cache;
+    }
+
+    /**
+     * Private helper that returns the cached result of a query if results are cached
+     * @param query index of the query in WordStatStats
+     * @param k number of words asked for
+     * @param baseWord base word of a collocation query, null otherwise
+     * @param precede direction of a collocation query, false otherwise
+     * @return result, or null if it is not cached
+     */
+    private String[] cached(int query, int k, String baseWord, boolean precede){
+        QueryCache cache = this.cache;
+        return cache != null ? cache.get(query, k, baseWord, precede) : null;
+    }
+
+    /**
+     * Private helper that caches the result of a query if results are cached
+     * @param query index of the query in WordStatStats
+     * @param k number of words asked for
+     * @param baseWord base word of a collocation query, null otherwise
+     * @param precede direction of a collocation query, false otherwise
+     * @param words result of the query
+     */
+    private void cache(int query, int k, String baseWord, boolean precede, String[] words){
+        QueryCache cache = this.cache;
+        if(cache != null)
+            cache.put(query, k, baseWord, precede, words);
+    }
+
+    /**
+     * Private helper that drops the cached results if results are cached
+     */
+    private void clearCache(){
+        QueryCache cache = this.cache;
+        if(cache != null)
+            cache.clear();
+    }
+
+    /**
+     * Private helper that reads the clock at the start of a query if queries are timed
+     * @return start time, or 0 if queries are not timed
+     */
+    private long startQuery(){
+        return stats != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Private helper that records the latency of a query if queries are timed
+     * @param query index of the query in WordStatStats
+     * @param start time returned by startQuery
+     */
+    private void endQuery(int query, long start){
+        if(stats != null)
+            stats.recordQuery(query, System.nanoTime() - start);
+    }
+
+    /**
+     * Private helper that returns the words of the given ids
+     * @param ids word ids
+     * @return Array of the words in the same order
+     */
+    private String[] keys(int[] ids){
+        String[] words = new String[ids.length];
+        for(int i = 0; i < ids.length; i++)
+            words[i] = table.getKey(ids[i]);
+        return words;
+    }
+
+    /**
+     * Private helper that returns a consumer counting every word into the given table and recording its id in order,
+     * so a word that was seen before allocates nothing
+     * @param table table to count the words into
+     * @param words sequence receiving the id of every word in order
+     * @return consumer of the tokenizer
+     */
+    private static TokenSink counter(OpenHashTable table, IdSequence words){
+        return (buffer, offset, length) -> words.add(table.put(buffer, offset, length));
+    }
+
+    /**
+     * Private helper that returns a consumer counting every added word into the hashtable and its bucket, and recording
+     * its id in order if the word sequence is kept
+     * @return consumer of the tokenizer
+     */
+    private TokenSink updater(){
+        return (buffer, offset, length) -> {
+            int id = table.put(buffer, offset, length);
+            // Buckets not built yet are built from the counts later
+            FrequencyBuckets ranking = this.ranking;
+            if(ranking != null)
+                ranking.increment(id);
+            if(sequence != null)
+                sequence.add(id);
+        };
+    }
+
+    /**
+     * Private helper that initializes the appropriate fields once the words have been counted into the hashtable
+     * @param words id of every word of the input in order
+     */
+    private void initialize(IdSequence words){
+        // Initializing the word sequence, the words being ranked on the first ranked query
+        this.sequence = words;
+    }
+
+    /**
+     * Private helper that returns the ranked words, ranking them the first time. Threads asking at the same time wait
+     * for a single ranking instead of each building one
+     * @return word ids grouped by occurrences
+     */
+    private FrequencyBuckets ranking(){
+        FrequencyBuckets ranking = this.ranking;
+        if(ranking == null){
+            synchronized(this){
+                ranking = this.ranking;
+                if(ranking == null){
+                    rank();
+                    ranking = this.ranking;
                 }
             }
-            if(!dupe)
-                // Add the word to the node list
-                nodeList.add(table.getNode(word));
-        }
-        // Sorting the node list in ascending order
-        Collections.sort(nodeList);
-        // Indexing return array
-        int index = 0;
-        // Make sure k is not too large
-        if(k > nodeList.size())
-            k = nodeList.size();
-        // Instantiate return array
-        String[] returnArray = new String[k];
-        // Parses the node list
-        for(int i = nodeList.size()-1; i >= nodeList.size()-k; i--){
-            // Add the word to the array
-            returnArray[index] = nodeList.get(i).getKey();
-            // increment index
-            index++;
         }
+        return ranking;
+    }
 
-        // Return the array
-        return returnArray;
+    /**
+     * Private helper that ranks the words counted in the hashtable
+     */
+    private void rank(){
+        long start = System.nanoTime();
+        // Collecting the counts by id, ids being dense since nothing is removed from the table
+        int[] counts = new int[table.size()];
+        for(int id = 0; id < counts.length; id++)
+            counts[id] = table.getOccurrences(id);
+        ranking = new FrequencyBuckets(counts, counts.length);
+        phaseNanos[WordStatStats.RANK] += System.nanoTime() - start;
     }
 
+    /**
+     * Private helper that returns the executor running the files of a corpus: one virtual thread per file when the
+     * runtime has them, looked up reflectively so the code still builds for runtimes without them, and otherwise a
+     * pool of concurrency platform threads
+     * @param concurrency largest number of files read at the same time
+     * @return executor
+     */
+    private static ExecutorService executor(int concurrency){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "wordstat-corpus");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
 
     /**
-     * Private helper that initializes the appropriate fields
-     * @param tokenizer tokenizer based on what constructor is used
+     * Private nested class holding the words and counts of one file of a corpus, or the reason it could not be read
      */
-    private void initialize(Tokenizer tokenizer){
-        // Initializing tokenizer
-        this.tokenizer = tokenizer;
-        // Initializing the hashtable
-        this.table = new HashTable<>();
-        // Puts all words in the hashtable
-        for(String word : this.tokenizer.wordList()){
-            table.put(word, word);
+    private static class FileCount {
+
+        // Fields that hold the words and counts of the file
+        private IdSequence words;
+        private OpenHashTable table;
+
+        // Field that holds the reason the file could not be read, null if it was read
+        private IOException failure;
+
+        /**
+         * Method that parses and counts a file once a permit is available
+         * @param file File path of a txt file
+         * @param permits permits bounding the files read at the same time
+         * @return words and counts of the file, or the reason it could not be read
+         * @throws InterruptedException Thrown in the event that the corpus is abandoned while waiting for a permit
+         */
+        static FileCount count(String file, Semaphore permits) throws InterruptedException {
+            FileCount count = new FileCount();
+            permits.acquire();
+            try {
+                count.words = new IdSequence();
+                count.table = new OpenHashTable();
+                Tokenizer.tokenize(file, false, counter(count.table, count.words));
+            } catch (IOException e) {
+                count.failure = e;
+            } catch (UncheckedIOException e) {
+                count.failure = e.getCause();
+            } finally {
+                permits.release();
+            }
+            // Releasing what was counted of a file that failed halfway
+            if(count.failure != null){
+                count.words = null;
+                count.table = null;
+            }
+            return count;
         }
-        // Adding all unique words to the sorted nodes
-        for(String word : this.tokenizer.wordList()) {
-            // Checking duplicate
-            boolean dupe = false;
-            // Parses all nodes
-            for(HashTable.Node<String> n : sortedNodes) {
-                // If keys are equivalent dupe and do not add
-                if(n.getKey().equals(word)) {
-                    dupe = true;
-                    break;
+    }
+
+    /**
+     * Private nested task that parses and counts a run of consecutive file ranges, splitting it in half until a single
+     * range is left. Results are merged left to right, so words keep the order in which they first appear in the file
+     */
+    @SuppressWarnings("serial")
+    private static class CountTask extends RecursiveTask<CountTask> {
+
+        // Field that holds the file path
+        private final String file;
+
+        // Field that holds the range boundaries of the file
+        private final long[] bounds;
+
+        // Fields that hold the first and one past the last range of this task
+        private final int from, to;
+
+        // Fields that hold the words and counts of this task's ranges once computed
+        private IdSequence words;
+        private OpenHashTable table;
+
+        // Field containing the time this task and its subtasks spent merging
+        private long mergeNanos;
+
+        // Constructor that creates a task for the ranges from (inclusive) to to (exclusive)
+        CountTask(String file, long[] bounds, int from, int to) {
+            this.file = file;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected CountTask compute() {
+            // Parsing and counting a single range
+            if(to - from == 1) {
+                words = new IdSequence();
+                table = new OpenHashTable();
+                try {
+                    Tokenizer.tokenize(file, bounds[from], bounds[to], counter(table, words));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+                return this;
             }
-            if(!dupe)
-                // Adding the word if unique
-                sortedNodes.add(table.getNode(word));
-        }
-        // Sort the node list
-        Collections.sort(sortedNodes);
-        // Initializing our ranked table
-        rankedTable = new HashTable<>();
-        // Rank variable
-        int rank = 0;
-        // Holds last occurrence
-        int lastOccurrences = 0;
-        // Amount of ranks to add
-        int toAdd = 1;
-        // Parses the sorted nodes in reverse
-        for (int i = sortedNodes.size()-1; i >= 0; i--) {
-            // If the occurrences are the same increment
-            if (sortedNodes.get(i).getOccurrences() == lastOccurrences) {
-                toAdd++;
-            // If we reach a unique # of occurrences rank it
-            } else if (sortedNodes.get(i).getOccurrences() != lastOccurrences) {
-                rank = toAdd + rank;
-                toAdd = 1;
+            // Splitting the ranges in half and running the left half on this thread
+            int middle = (from + to) >>> 1;
+            CountTask right = new CountTask(file, bounds, middle, to);
+            right.fork();
+            CountTask left = new CountTask(file, bounds, from, middle).compute();
+            CountTask merged = right.join();
+            long start = System.nanoTime();
+            // Appending the right half so its new words come after every word of the left half, translating its ids
+            int[] remap = new int[merged.table.size()];
+            for(int id = 0; id < remap.length; id++){
+                String word = merged.table.getKey(id);
+                remap[id] = left.table.put(word, merged.table.getOccurrences(word));
             }
-            // Add them to the ranked hashtable
-            rankedTable.put(sortedNodes.get(i).getKey(), rank);
-            // Save last occurrences
-            lastOccurrences = sortedNodes.get(i).getOccurrences();
+            left.words.addAll(merged.words, remap);
+            left.mergeNanos += merged.mergeNanos + System.nanoTime() - start;
+            return left;
         }
     }
 }
@@ -0,0 +1,177 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Class holding the metrics of a {@link WordStat}. Phase timings cost a few clock reads per build and are always kept,
+ * while query latencies are only timed once WordStat.enableStats has been called, so that a WordStat without metrics
+ * pays a single null check per query. The resizes and probe lengths of the table the words are counted in are read
+ * from the table itself when asked for, so counting never pays for them. Latencies go to histograms with one bucket
+ * per power of two nanoseconds, which take a fixed amount of memory however many queries are timed. Query counters
+ * are atomic, so queries timed on several threads at once are all counted
+ */
+public class WordStatStats implements WordStatStatsMBean {
+    // Indexes of the phases
+    static final int COUNT = 0, MERGE = 1, RANK = 2, INDEX = 3, PHASES = 4;
+
+    // Indexes of the queries, in the order of QUERIES
+    static final int WORD_COUNT = 0, WORD_RANK = 1, MOST_COMMON = 2, LEAST_COMMON = 3, COLLOCATIONS = 4,
+            WORDS_BETWEEN = 5, COUNT_HISTOGRAM = 6;
+
+    // Names of the queries
+    private static final String[] QUERIES = {"wordCount", "wordRank", "mostCommonWords", "leastCommonWords",
+            "mostCommonCollocations", "wordsBetween", "countHistogram"};
+
+    // Field that holds the time spent in every phase, shared with the WordStat that records it
+    private final long[] phaseNanos;
+
+    // Field that holds the table the words are counted in
+    private final OpenHashTable table;
+
+    // Field that holds the latency histogram of every query, bucket b of query q at index q * 64 + b
+    private final AtomicLongArray latencies = new AtomicLongArray(QUERIES.length * 64);
+
+    // Fields that hold the number of timed calls and their total latency for every query
+    private final AtomicLongArray calls = new AtomicLongArray(QUERIES.length),
+            totalNanos = new AtomicLongArray(QUERIES.length);
+
+    /**
+     * Constructor that creates metrics around the phase timings and the table of a WordStat
+     * @param phaseNanos time spent in every phase, updated by the WordStat
+     * @param table table the words are counted in
+     */
+    WordStatStats(long[] phaseNanos, OpenHashTable table){
+        this.phaseNanos = phaseNanos;
+        this.table = table;
+    }
+
+    /**
+     * Method that registers the metrics with the platform MBean server
+     * @param name value of the name key of the object name, unique among the registered statistics
+     * @return object name the metrics were registered under
+     * @throws JMException Thrown in the event that the name is invalid or already registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("wordstat:type=WordStat,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public long getCountNanos(){
+        return phaseNanos[COUNT];
+    }
+
+    @Override
+    public long getMergeNanos(){
+        return phaseNanos[MERGE];
+    }
+
+    @Override
+    public long getRankNanos(){
+        return phaseNanos[RANK];
+    }
+
+    @Override
+    public long getIndexNanos(){
+        return phaseNanos[INDEX];
+    }
+
+    @Override
+    public int getTableResizes(){
+        return table.resizes();
+    }
+
+    @Override
+    public double getAverageProbeLength(){
+        int[] histogram = table.probeLengthHistogram();
+        long keys = 0, probes = 0;
+        for(int length = 1; length < histogram.length; length++){
+            keys += histogram[length];
+            probes += (long) length * histogram[length];
+        }
+        return keys == 0 ? 0 : (double) probes / keys;
+    }
+
+    @Override
+    public int[] getProbeLengthHistogram(){
+        return table.probeLengthHistogram();
+    }
+
+    @Override
+    public String[] getQueries(){
+        return QUERIES.clone();
+    }
+
+    @Override
+    public long getQueryCount(String query){
+        return calls.get(query(query));
+    }
+
+    @Override
+    public double getMeanLatencyNanos(String query){
+        int q = query(query);
+        long n = calls.get(q);
+        return n == 0 ? 0 : (double) totalNanos.get(q) / n;
+    }
+
+    @Override
+    public long getLatencyPercentileNanos(String query, double percentile){
+        // Checking to ensure parameter is valid
+        if(percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException();
+        int q = query(query);
+        // Walking the buckets until the wanted share of the calls is reached
+        long target = (long) Math.ceil(calls.get(q) * percentile / 100), seen = 0;
+        for(int bucket = 0; bucket < 64; bucket++){
+            seen += latencies.get(q * 64 + bucket);
+            if(seen >= target && seen > 0)
+                return bucket == 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+        return 0;
+    }
+
+    @Override
+    public long[] getLatencyHistogram(String query){
+        int q = query(query);
+        long[] histogram = new long[64];
+        for(int bucket = 0; bucket < 64; bucket++)
+            histogram[bucket] = latencies.get(q * 64 + bucket);
+        return histogram;
+    }
+
+    @Override
+    public void reset(){
+        for(int i = 0; i < latencies.length(); i++)
+            latencies.set(i, 0);
+        for(int q = 0; q < QUERIES.length; q++){
+            calls.set(q, 0);
+            totalNanos.set(q, 0);
+        }
+    }
+
+    /**
+     * Method that records the latency of a finished query, safe to call from several threads at once
+     * @param query index of the query
+     * @param nanos latency of the call
+     */
+    void recordQuery(int query, long nanos){
+        latencies.incrementAndGet(query * 64 + 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+        calls.incrementAndGet(query);
+        totalNanos.addAndGet(query, nanos);
+    }
+
+    /**
+     * Private helper that returns the index of a query from its name
+     * @param query name of the query
+     * @return index of the query
+     */
+    private static int query(String query){
+        for(int q = 0; q < QUERIES.length; q++){
+            if(QUERIES[q].equals(query))
+                return q;
+        }
+        throw new IllegalArgumentException("unknown query: " + query);
+    }
+}
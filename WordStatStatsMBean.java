@@ -0,0 +1,90 @@
+/**
+ * Interface exposing the metrics of a {@link WordStat} through JMX, implemented by {@link WordStatStats}
+ */
+public interface WordStatStatsMBean {
+
+    /**
+     * Method that returns the time spent parsing and counting words, which happen together as every word is counted
+     * when the tokenizer hands it over
+     * @return nanoseconds
+     */
+    long getCountNanos();
+
+    /**
+     * Method that returns the time spent merging the counts of file ranges parsed in parallel, summed over threads
+     * @return nanoseconds
+     */
+    long getMergeNanos();
+
+    /**
+     * Method that returns the time spent ranking the words
+     * @return nanoseconds
+     */
+    long getRankNanos();
+
+    /**
+     * Method that returns the time spent building the collocation index
+     * @return nanoseconds
+     */
+    long getIndexNanos();
+
+    /**
+     * Method that returns the number of times the table the words are counted in doubled its slots
+     * @return # of resizes
+     */
+    int getTableResizes();
+
+    /**
+     * Method that returns the mean number of slots a lookup of a counted word compares
+     * @return mean probe length
+     */
+    double getAverageProbeLength();
+
+    /**
+     * Method that returns the number of counted words by the number of slots a lookup of them compares
+     * @return histogram, entry p counting the words found after comparing p slots
+     */
+    int[] getProbeLengthHistogram();
+
+    /**
+     * Method that returns the names of the timed queries, the query methods of WordStat
+     * @return names of the queries
+     */
+    String[] getQueries();
+
+    /**
+     * Method that returns the number of timed calls to a query
+     * @param query name of the query
+     * @return # of calls
+     */
+    long getQueryCount(String query);
+
+    /**
+     * Method that returns the mean latency of a query
+     * @param query name of the query
+     * @return nanoseconds
+     */
+    double getMeanLatencyNanos(String query);
+
+    /**
+     * Method that returns an upper bound on a percentile of the latency of a query, the top of the histogram bucket
+     * holding it
+     * @param query name of the query
+     * @param percentile percentile between 0 and 100
+     * @return nanoseconds
+     */
+    long getLatencyPercentileNanos(String query, double percentile);
+
+    /**
+     * Method that returns the latency histogram of a query, bucket i counting the calls that took from 2^(i - 1) to
+     * 2^i - 1 nanoseconds
+     * @param query name of the query
+     * @return histogram
+     */
+    long[] getLatencyHistogram(String query);
+
+    /**
+     * Method that sets every query counter back to zero
+     */
+    void reset();
+}
@@ -0,0 +1,72 @@
+import java.util.concurrent.Callable;
+
+/**
+ * Minimal benchmark harness shared by the benchmarks of this module. Every measurement runs a few warmup iterations so
+ * the code under test is compiled, then times each measured iteration on a freshly set up state and reports the best
+ * and mean time per operation. Results of the measured code are folded into a field so the JIT cannot drop the work.
+ * <p>
+ * JMH is not used because it refuses benchmark classes in the default package, and the classes under test live in the
+ * default package, which a benchmark in a named package cannot import.
+ * Iteration counts are read from the system properties warmup (default 3) and iterations (default 5)
+ */
+public final class Bench {
+
+    // Number of unmeasured iterations run before each measurement
+    private static final int WARMUP = Integer.getInteger("warmup", 3);
+
+    // Number of measured iterations
+    private static final int ITERATIONS = Integer.getInteger("iterations", 5);
+
+    // Field every result is folded into, printed at exit so it stays observable
+    private static long sink;
+
+    // Measured code, given the state built for its iteration
+    public interface Task<S> {
+        long run(S state) throws Exception;
+    }
+
+    private Bench() {
+    }
+
+    /**
+     * Prints the header of the result table
+     */
+    public static void header() {
+        System.out.printf("%-48s %14s %14s %14s%n", "benchmark", "best ns/op", "mean ns/op", "ops/s");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println("(sink " + sink + ")")));
+    }
+
+    /**
+     * Measures a task that needs no fresh state
+     * @param name name printed in the result table
+     * @param operations number of operations one run of the task performs
+     * @param task measured code
+     */
+    public static void measure(String name, long operations, Callable<Long> task) throws Exception {
+        measure(name, operations, () -> null, state -> task.call());
+    }
+
+    /**
+     * Measures a task, building a fresh state before every iteration outside of the timed region
+     * @param name name printed in the result table
+     * @param operations number of operations one run of the task performs
+     * @param setup builds the state of one iteration
+     * @param task measured code
+     */
+    public static <S> void measure(String name, long operations, Callable<S> setup, Task<S> task) throws Exception {
+        for(int i = 0; i < WARMUP; i++)
+            sink += task.run(setup.call());
+        long best = Long.MAX_VALUE, total = 0;
+        for(int i = 0; i < ITERATIONS; i++) {
+            S state = setup.call();
+            long begin = System.nanoTime();
+            sink += task.run(state);
+            long elapsed = System.nanoTime() - begin;
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        double mean = (double) total / ITERATIONS;
+        System.out.printf("%-48s %14.1f %14.1f %14.0f%n", name, (double) best / operations, mean / operations,
+                operations / (mean / 1e9));
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.Random;
+
+/**
+ * Adversarial-key benchmark for HashTable and OpenHashTable. The crafted key set concatenates the blocks "Aa" and "BB",
+ * which share a String.hashCode, so all 2^blocks keys collide under String.hashCode. Each table is measured on those
+ * keys and on random keys of the same length, next to a chained table indexed by String.hashCode like HashTable was,
+ * which degrades to a linear scan per operation on the crafted keys.
+ * Usage: java CollisionBenchmark [blocks], on top of the system properties of Bench
+ */
+public class CollisionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+        String[] colliding = colliding(blocks);
+        String[] random = random(colliding.length, blocks * 2);
+
+        Bench.header();
+        for(String[] keys : new String[][]{random, colliding}) {
+            String set = (keys == colliding ? "colliding" : "random") + " n=" + keys.length;
+            Bench.measure("HashTable put+get " + set, 2L * keys.length, () -> {
+                HashTable<String> table = new HashTable<>();
+                for(String key : keys)
+                    table.put(key, key);
+                long found = 0;
+                for(String key : keys)
+                    found += table.get(key).length();
+                return found;
+            });
+            Bench.measure("OpenHashTable put+get " + set, 2L * keys.length, () -> {
+                OpenHashTable table = new OpenHashTable();
+                for(String key : keys)
+                    table.put(key);
+                long found = 0;
+                for(String key : keys)
+                    found += table.getOccurrences(key);
+                return found;
+            });
+            Bench.measure("String.hashCode chains put+get " + set, 2L * keys.length, () -> {
+                UnseededChains table = new UnseededChains(500);
+                for(String key : keys)
+                    table.put(key);
+                long found = 0;
+                for(String key : keys)
+                    found += table.contains(key) ? 1 : 0;
+                return found;
+            });
+        }
+    }
+
+    /**
+     * Builds every concatenation of the given number of "Aa" and "BB" blocks
+     */
+    private static String[] colliding(int blocks) {
+        ArrayList<String> keys = new ArrayList<>();
+        keys.add("");
+        for(int b = 0; b < blocks; b++) {
+            ArrayList<String> longer = new ArrayList<>(keys.size() * 2);
+            for(String key : keys) {
+                longer.add(key + "Aa");
+                longer.add(key + "BB");
+            }
+            keys = longer;
+        }
+        return keys.toArray(new String[0]);
+    }
+
+    /**
+     * Builds random letter keys of the given length
+     */
+    private static String[] random(int count, int length) {
+        Random random = new Random(42);
+        String[] keys = new String[count];
+        char[] chars = new char[length];
+        for(int i = 0; i < count; i++) {
+            for(int j = 0; j < length; j++)
+                chars[j] = (char) ('A' + random.nextInt(58));
+            keys[i] = new String(chars);
+        }
+        return keys;
+    }
+
+    /**
+     * Chained table indexed by Math.abs(key.hashCode() % length) with doubling at load factor 1, the scheme HashTable
+     * used before it hashed with a seed and grew trees in long buckets
+     */
+    private static class UnseededChains {
+        private LinkedList<String>[] table;
+        private int size;
+
+        UnseededChains(int capacity) {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            LinkedList<String>[] chains = new LinkedList[capacity];
+            table = chains;
+        }
+
+        boolean contains(String key) {
+            LinkedList<String> chain = table[Math.abs(key.hashCode() % table.length)];
+            return chain != null && chain.contains(key);
+        }
+
+        void put(String key) {
+            if(contains(key))
+                return;
+            add(table, key);
+            if(++size >= table.length) {
+                LinkedList<String>[] old = table;
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                LinkedList<String>[] grown = new LinkedList[old.length * 2];
+                table = grown;
+                for(LinkedList<String> chain : old) {
+                    if(chain != null) {
+                        for(String k : chain)
+                            add(table, k);
+                    }
+                }
+            }
+        }
+
+        private static void add(LinkedList<String>[] t, String key) {
+            int index = Math.abs(key.hashCode() % t.length);
+            if(t[index] == null)
+                t[index] = new LinkedList<>();
+            t[index].addFirst(key);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Contention benchmark for ConcurrentHashTable: several threads feed skewed word keys into one shared table and the
+ * throughput is reported for 1, 2, 4, ... up to the given number of threads.
+ * Usage: java ConcurrentHashTableBenchmark [maxThreads] [putsPerThread] [vocabulary]
+ */
+public class ConcurrentHashTableBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int putsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int vocabulary = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        // Keys are drawn with a skew close to word frequencies so a few hot keys see most of the traffic
+        String[] keys = new String[vocabulary];
+        for(int i = 0; i < vocabulary; i++)
+            keys[i] = "word" + i;
+        int[][] streams = new int[maxThreads][putsPerThread];
+        Random random = new Random(42);
+        for(int[] stream : streams) {
+            for(int i = 0; i < putsPerThread; i++)
+                stream[i] = (int) Math.min(vocabulary - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(vocabulary))) - 1);
+        }
+
+        // A warmup run at full width so every thread count is measured against compiled code
+        run(keys, streams, maxThreads);
+        System.out.printf("%8s %14s %10s%n", "threads", "puts/s", "speedup");
+        double base = 0;
+        for(int threads = 1; threads <= maxThreads; threads = threads == maxThreads ? threads + 1 : Math.min(threads * 2, maxThreads)) {
+            double throughput = run(keys, streams, threads);
+            if(threads == 1)
+                base = throughput;
+            System.out.printf("%8d %14.0f %10.2f%n", threads, throughput, throughput / base);
+        }
+    }
+
+    /**
+     * Runs the given number of ingest threads against a fresh table
+     * @return puts per second across all threads
+     */
+    private static double run(String[] keys, int[][] streams, int threads) throws InterruptedException {
+        ConcurrentHashTable<String> table = new ConcurrentHashTable<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for(int t = 0; t < threads; t++) {
+            int[] stream = streams[t];
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for(int index : stream)
+                    table.put(keys[index], keys[index]);
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for(Thread worker : workers)
+            worker.join();
+        long elapsed = System.nanoTime() - begin;
+        return (double) threads * streams[0].length / (elapsed / 1e9);
+    }
+}
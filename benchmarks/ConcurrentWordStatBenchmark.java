@@ -0,0 +1,85 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Read scaling benchmark for ConcurrentWordStat: reader threads query wordCount, wordRank and mostCommonWords while a
+ * writer keeps adding Zipf text, and the read throughput is reported for 1, 2, 4, ... up to the given number of readers,
+ * with and without the writer. Reads take no lock, so throughput should follow the number of cores and not the ingest.
+ * Usage: java ConcurrentWordStatBenchmark [maxReaders] [millis] [publishWords]
+ */
+public class ConcurrentWordStatBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxReaders = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+        long publishWords = args.length > 2 ? Long.parseLong(args[2]) : 1_000_000;
+
+        ZipfCorpus corpus = ZipfCorpus.fromProperties();
+        String[] text = corpus.lines(Integer.getInteger("words", 1_000_000));
+        String[] lookups = new String[4096];
+        for(int i = 0; i < lookups.length; i++)
+            lookups[i] = corpus.next();
+
+        // A warmup run at full width so every reader count is measured against compiled code
+        run(text, lookups, maxReaders, millis, true, publishWords);
+        System.out.printf("%8s %16s %16s%n", "readers", "reads/s idle", "reads/s ingest");
+        for(int readers = 1; readers <= maxReaders; readers = readers == maxReaders ? readers + 1 : Math.min(readers * 2, maxReaders)) {
+            double idle = run(text, lookups, readers, millis, false, publishWords);
+            double ingest = run(text, lookups, readers, millis, true, publishWords);
+            System.out.printf("%8d %16.0f %16.0f%n", readers, idle, ingest);
+        }
+    }
+
+    /**
+     * Runs the given number of readers for the given time against statistics holding the text, with a writer adding
+     * the text again and again if ingest is set
+     * @return reads per second across all readers
+     */
+    private static double run(String[] text, String[] lookups, int readers, long millis, boolean ingest, long publishWords)
+            throws InterruptedException {
+        ConcurrentWordStat stat = new ConcurrentWordStat(publishWords, 0);
+        stat.addText(text);
+        stat.publish();
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] reads = new long[readers];
+        Thread[] threads = new Thread[readers + 1];
+        for(int r = 0; r < readers; r++) {
+            int reader = r;
+            threads[r] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long n = 0, sink = 0;
+                while(!done.get()) {
+                    String word = lookups[(int) (n & (lookups.length - 1))];
+                    int count = stat.wordCount(word);
+                    // A word in one snapshot is in every later one, since counts only grow
+                    if(count > 0)
+                        sink += count + stat.wordRank(word);
+                    if((n & 63) == 0)
+                        sink += stat.mostCommonWords(10).length;
+                    n++;
+                }
+                reads[reader] = n + (sink == 42 ? 1 : 0);
+            });
+        }
+        threads[readers] = new Thread(() -> {
+            while(ingest && !done.get())
+                stat.addText(text);
+        });
+        for(Thread thread : threads)
+            thread.start();
+        start.countDown();
+        Thread.sleep(millis);
+        done.set(true);
+        for(Thread thread : threads)
+            thread.join();
+        long total = 0;
+        for(long n : reads)
+            total += n;
+        return total / (millis / 1e3);
+    }
+}
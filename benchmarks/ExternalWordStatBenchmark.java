@@ -0,0 +1,80 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Out-of-core benchmark for ExternalWordStat: counts a corpus larger than the heap under a memory budget and reports
+ * the peak heap actually used. Run it with a small -Xmx, such as -Xmx64m, to check that the heap stays bounded. The
+ * corpus is generated as a stream if the file does not exist, with ranks spread log-uniformly over a vocabulary far
+ * larger than the heap so that most words are rare, like the tail of natural text.
+ * Usage: java ExternalWordStatBenchmark corpusFile [words] [budgetMB] [vocabulary]
+ */
+public class ExternalWordStatBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.err.println("Usage: java ExternalWordStatBenchmark corpusFile [words] [budgetMB] [vocabulary]");
+            return;
+        }
+        String corpus = args[0];
+        long words = args.length > 1 ? Long.parseLong(args[1]) : 20_000_000;
+        long budget = (args.length > 2 ? Long.parseLong(args[2]) : 16) << 20;
+        long vocabulary = args.length > 3 ? Long.parseLong(args[3]) : 1L << 40;
+        if(!new File(corpus).exists())
+            generate(corpus, words, vocabulary);
+
+        long heap = Runtime.getRuntime().maxMemory();
+        System.out.printf("corpus %d MB, max heap %d MB, budget %d MB%n",
+                new File(corpus).length() >> 20, heap >> 20, budget >> 20);
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            pool.resetPeakUsage();
+        File directory = Files.createTempDirectory("spill").toFile();
+        long begin = System.nanoTime();
+        try (ExternalWordStat stat = new ExternalWordStat(Collections.singletonList(corpus), budget, directory.getPath())) {
+            long build = System.nanoTime() - begin;
+            System.out.printf("build %.1f s, %d words, %d distinct, %d spills%n",
+                    build / 1e9, stat.totalWords(), stat.distinctWords(), stat.spills());
+            String top = stat.mostCommonWords(1)[0];
+            System.out.printf("most common \"%s\" x%d, rank %d%n", top, stat.wordCount(top), stat.wordRank(top));
+        }
+        directory.delete();
+        // Sum of the peaks of every heap pool, an upper bound on the heap in use at any one time
+        long peak = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        }
+        System.out.printf("peak heap %d MB of %d MB%n", peak >> 20, heap >> 20);
+    }
+
+    /**
+     * Writes a corpus one word at a time, so generating it needs no more memory than reading it
+     * @param file path of the file
+     * @param words number of words
+     * @param vocabulary number of distinct words that may be drawn
+     */
+    private static void generate(String file, long words, long vocabulary) throws IOException {
+        Random random = new Random(42);
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            StringBuilder word = new StringBuilder();
+            for(long i = 0; i < words; i++) {
+                // Log-uniform rank, so the word of rank r is drawn with probability about 1 / r
+                long rank = (long) Math.pow(vocabulary, random.nextDouble()) - 1;
+                word.setLength(0);
+                do {
+                    word.append((char) ('a' + rank % 26));
+                    rank /= 26;
+                } while(rank > 0);
+                out.append(word).append(i % 12 == 11 ? '\n' : ' ');
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Benchmark of HashTable put, get and remove across table sizes and load factors. The table is created with the
+ * capacity giving the wanted load factor once every key is in, so no rehash happens while measuring; get and remove
+ * look keys up in Zipf order so hot keys are hit most, like word counting does.
+ * Usage: java HashTableBenchmark, with the system properties sizes (default 1000,100000,1000000) and loadFactors
+ * (default 0.25,0.5,0.9) on top of those of ZipfCorpus and Bench
+ */
+public class HashTableBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String[] sizes = System.getProperty("sizes", "1000,100000,1000000").split(",");
+        String[] loadFactors = System.getProperty("loadFactors", "0.25,0.5,0.9").split(",");
+        Bench.header();
+        for(String s : sizes) {
+            int size = Integer.parseInt(s.trim());
+            // Distinct keys for put and remove, and a Zipf stream over the same keys for get
+            ZipfCorpus corpus = new ZipfCorpus(size, Double.parseDouble(System.getProperty("exponent", "1.1")),
+                    Long.getLong("seed", 42));
+            String[] keys = corpus.vocabulary();
+            String[] lookups = new String[size];
+            for(int i = 0; i < size; i++)
+                lookups[i] = corpus.next();
+            for(String l : loadFactors) {
+                double loadFactor = Double.parseDouble(l.trim());
+                int capacity = (int) Math.ceil(size / loadFactor);
+                String suffix = " n=" + size + " lf=" + loadFactor;
+                Bench.measure("put" + suffix, size, () -> new HashTable<String>(capacity), table -> {
+                    for(String key : keys)
+                        table.put(key, key);
+                    return table.size();
+                });
+                Bench.measure("get" + suffix, size, () -> filled(keys, capacity), table -> {
+                    long found = 0;
+                    for(String key : lookups)
+                        found += table.get(key).length();
+                    return found;
+                });
+                Bench.measure("remove" + suffix, size, () -> filled(keys, capacity), table -> {
+                    for(String key : keys)
+                        table.remove(key);
+                    return table.size();
+                });
+            }
+        }
+    }
+
+    /**
+     * Creates a table of the given capacity holding every key
+     */
+    private static HashTable<String> filled(String[] keys, int capacity) {
+        HashTable<String> table = new HashTable<>(capacity);
+        for(String key : keys)
+            table.put(key, key);
+        return table;
+    }
+}
@@ -0,0 +1,80 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.Reference;
+
+/**
+ * Garbage collection benchmark for OffHeapHashTable: fills an on-heap and an off-heap table with the same distinct
+ * words and reports, for each, the heap left in use and the time of a full collection with the table alive. The
+ * on-heap table keeps a String per word for the collector to trace, the off-heap one only a few primitive arrays.
+ * Usage: java OffHeapHashTableBenchmark [words]
+ */
+public class OffHeapHashTableBenchmark {
+
+    public static void main(String[] args) {
+        int words = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        System.out.printf("%-18s %10s %10s %10s %12s%n", "table", "words", "heap MB", "arena MB", "full gc ms");
+        for(int size = words / 8; size <= words; size *= 2) {
+            OpenHashTable onHeap = new OpenHashTable();
+            for(int i = 0; i < size; i++)
+                onHeap.put(word(i));
+            report("OpenHashTable", onHeap, size, 0, onHeap.size());
+            onHeap = null;
+
+            OffHeapHashTable offHeap = new OffHeapHashTable();
+            char[] buffer = new char[16];
+            for(int i = 0; i < size; i++) {
+                int length = spell(i, buffer);
+                offHeap.put(buffer, 0, length);
+            }
+            report("OffHeapHashTable", offHeap, size, offHeap.arenaBytes(), offHeap.size());
+        }
+    }
+
+    /**
+     * Collects twice so the second collection only traces the live table, and prints the heap and its time
+     */
+    private static void report(String name, Object table, int words, long arena, int size) {
+        System.gc();
+        long begin = collectionMillis();
+        System.gc();
+        long gc = collectionMillis() - begin;
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("%-18s %10d %10d %10d %12d%n", name, words, heap.getUsed() >> 20, arena >> 20, gc);
+        if(size != words)
+            throw new AssertionError();
+        // The table must stay alive through both collections
+        Reference.reachabilityFence(table);
+    }
+
+    /**
+     * Returns the total time spent collecting by every collector
+     */
+    private static long collectionMillis() {
+        long total = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(collector.getCollectionTime(), 0);
+        return total;
+    }
+
+    /**
+     * Spells a number with letters, base 26, so that distinct numbers give distinct words
+     */
+    private static String word(int n) {
+        char[] buffer = new char[16];
+        return new String(buffer, 0, spell(n, buffer));
+    }
+
+    /**
+     * Spells a number with letters into a buffer
+     * @return number of letters
+     */
+    private static int spell(int n, char[] buffer) {
+        int length = 0;
+        do {
+            buffer[length++] = (char) ('a' + n % 26);
+            n /= 26;
+        } while(n > 0);
+        return length;
+    }
+}
@@ -0,0 +1,57 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Startup benchmark for WordStat snapshots: compares building the statistics from a text file with loading them from a
+ * snapshot of the same file, with and without the word sequence.
+ * Usage: java SnapshotBenchmark textFile [iterations]
+ */
+public class SnapshotBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.err.println("Usage: java SnapshotBenchmark textFile [iterations]");
+            return;
+        }
+        String text = args[0];
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        // Snapshots written once from a first build, one with the word sequence and one without
+        File full = File.createTempFile("wordstat", ".snapshot");
+        File counts = File.createTempFile("wordstat-counts", ".snapshot");
+        full.deleteOnExit();
+        counts.deleteOnExit();
+        new WordStat(text).save(full.getPath());
+        try (FileReader reader = new FileReader(text)) {
+            new WordStat(reader, false).save(counts.getPath());
+        }
+        System.out.printf("snapshot sizes: %d bytes with sequence, %d bytes without, text %d bytes%n",
+                full.length(), counts.length(), new File(text).length());
+
+        System.out.printf("%-24s %12s%n", "startup", "best ms");
+        System.out.printf("%-24s %12.1f%n", "rebuild from text", best(iterations, () -> new WordStat(text)));
+        System.out.printf("%-24s %12.1f%n", "load with sequence", best(iterations, () -> WordStat.load(full.getPath())));
+        System.out.printf("%-24s %12.1f%n", "load counts only", best(iterations, () -> WordStat.load(counts.getPath())));
+    }
+
+    // Startup action that may fail to read its file
+    private interface Startup {
+        WordStat run() throws IOException;
+    }
+
+    /**
+     * Runs the action after one warmup run
+     * @return fastest run in milliseconds
+     */
+    private static double best(int iterations, Startup startup) throws IOException {
+        startup.run();
+        long best = Long.MAX_VALUE;
+        for(int i = 0; i < iterations; i++) {
+            long begin = System.nanoTime();
+            startup.run();
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        return best / 1e6;
+    }
+}
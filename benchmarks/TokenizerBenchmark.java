@@ -0,0 +1,46 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+
+/**
+ * Benchmark of Tokenizer on file and array input, reporting the time per word. The same Zipf corpus is written to a
+ * temporary file for the file modes and kept as lines for the array mode.
+ * Usage: java TokenizerBenchmark, with the system property words (default 2000000) on top of those of ZipfCorpus and
+ * Bench
+ */
+public class TokenizerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int words = Integer.getInteger("words", 2_000_000);
+        ZipfCorpus corpus = ZipfCorpus.fromProperties();
+        String[] lines = corpus.lines(words);
+        File file = File.createTempFile("zipf", ".txt");
+        file.deleteOnExit();
+        ZipfCorpus.fromProperties().write(file.getPath(), words);
+        String path = file.getPath();
+
+        Bench.header();
+        long[] count = new long[1];
+        TokenSink sink = (buffer, offset, length) -> count[0] += length;
+        Bench.measure("tokenize file", words, () -> {
+            Tokenizer.tokenize(path, false, sink);
+            return count[0];
+        });
+        Bench.measure("tokenize file mapped", words, () -> {
+            Tokenizer.tokenize(path, true, sink);
+            return count[0];
+        });
+        Bench.measure("tokenize reader", words, () -> {
+            try (Reader reader = new FileReader(path)) {
+                Tokenizer.tokenize(reader, sink);
+            }
+            return count[0];
+        });
+        Bench.measure("tokenize array", words, () -> {
+            Tokenizer.tokenize(lines, sink);
+            return count[0];
+        });
+        Bench.measure("word list file", words, () -> (long) new Tokenizer(path).wordList().size());
+        Bench.measure("word list array", words, () -> (long) new Tokenizer(lines).wordList().size());
+    }
+}
@@ -0,0 +1,87 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Benchmark of WordStat construction from every kind of input and of each query method on the resulting statistics.
+ * Construction reports the time per word of the corpus, queries the time per call.
+ * Usage: java WordStatBenchmark, with the system properties words (default 2000000), queries (default 100000) and k
+ * (default 10) on top of those of ZipfCorpus and Bench
+ */
+public class WordStatBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int words = Integer.getInteger("words", 2_000_000);
+        int queries = Integer.getInteger("queries", 100_000);
+        int k = Integer.getInteger("k", 10);
+        ZipfCorpus corpus = ZipfCorpus.fromProperties();
+        String[] lines = corpus.lines(words);
+        File file = File.createTempFile("zipf", ".txt");
+        file.deleteOnExit();
+        ZipfCorpus.fromProperties().write(file.getPath(), words);
+        String path = file.getPath();
+        // Query words drawn from the same distribution as the text, and base words for the collocation queries
+        String[] lookups = new String[queries];
+        for(int i = 0; i < queries; i++)
+            lookups[i] = corpus.next();
+        String[] bases = new String[Math.min(queries, 100)];
+        System.arraycopy(lookups, 0, bases, 0, bases.length);
+
+        Bench.header();
+        Bench.measure("construct file", words, () -> (long) new WordStat(path).mostCommonWords(1).length);
+        Bench.measure("construct file parallel", words, () -> (long) new WordStat(path, true).mostCommonWords(1).length);
+        Bench.measure("construct array", words, () -> (long) new WordStat(lines).mostCommonWords(1).length);
+        Bench.measure("construct reader", words, () -> {
+            try (Reader reader = new FileReader(path)) {
+                return (long) new WordStat(reader, false).mostCommonWords(1).length;
+            }
+        });
+
+        WordStat stat = new WordStat(path);
+        // Rare words of the distribution may not occur in the text, and wordRank only accepts words that do
+        String[] present = Arrays.stream(lookups).filter(word -> stat.wordCount(word) > 0).toArray(String[]::new);
+        Bench.measure("wordCount", queries, () -> {
+            long total = 0;
+            for(String word : lookups)
+                total += stat.wordCount(word);
+            return total;
+        });
+        Bench.measure("wordRank", present.length, () -> {
+            long total = 0;
+            for(String word : present)
+                total += stat.wordRank(word);
+            return total;
+        });
+        Bench.measure("wordCounts batch", queries, () -> (long) Arrays.stream(stat.wordCounts(lookups)).sum());
+        Bench.measure("wordRanks batch", queries, () -> (long) Arrays.stream(stat.wordRanks(lookups)).sum());
+        Bench.measure("mostCommonWords k=" + k, queries, () -> {
+            long total = 0;
+            for(int i = 0; i < queries; i++)
+                total += stat.mostCommonWords(k).length;
+            return total;
+        });
+        Bench.measure("leastCommonWords k=" + k, queries, () -> {
+            long total = 0;
+            for(int i = 0; i < queries; i++)
+                total += stat.leastCommonWords(k).length;
+            return total;
+        });
+        Bench.measure("mostCommonCollocations scan k=" + k, bases.length, () -> {
+            long total = 0;
+            for(String base : bases)
+                total += stat.mostCommonCollocations(k, base, false).length;
+            return total;
+        });
+        Bench.measure("indexCollocations depth=" + k, 1, () -> {
+            stat.indexCollocations(k);
+            return 1L;
+        });
+        Bench.measure("mostCommonCollocations indexed k=" + k, bases.length, () -> {
+            long total = 0;
+            for(String base : bases)
+                total += stat.mostCommonCollocations(k, base, true).length;
+            return total;
+        });
+    }
+}
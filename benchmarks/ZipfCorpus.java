@@ -0,0 +1,138 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generator of synthetic corpora whose word frequencies follow a Zipf distribution, the word of rank r occurring in
+ * proportion to 1 / r^exponent like in natural text. Generation only depends on its parameters and seed, so every run
+ * of a benchmark sees the same input. Words are spelled with letters only since the tokenizer drops digits, lines
+ * start with a capital and end with a period so normalization is exercised too.
+ * Usage: java ZipfCorpus outputFile [words] [vocabulary] [exponent] [seed]
+ */
+public final class ZipfCorpus {
+
+    // Number of words on every generated line
+    private static final int WORDS_PER_LINE = 12;
+
+    // Fields holding the distinct words by rank and the cumulative probability of every rank
+    private final String[] vocabulary;
+    private final double[] cumulative;
+
+    // Field holding the random source, seeded so generation is reproducible
+    private final Random random;
+
+    /**
+     * Creates a generator
+     * @param vocabulary number of distinct words
+     * @param exponent Zipf exponent, around 1 for natural text
+     * @param seed random seed
+     */
+    public ZipfCorpus(int vocabulary, double exponent, long seed) {
+        if(vocabulary < 1 || exponent <= 0)
+            throw new IllegalArgumentException();
+        this.vocabulary = new String[vocabulary];
+        cumulative = new double[vocabulary];
+        double total = 0;
+        for(int rank = 0; rank < vocabulary; rank++) {
+            this.vocabulary[rank] = word(rank);
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        for(int rank = 0; rank < vocabulary; rank++)
+            cumulative[rank] /= total;
+        random = new Random(seed);
+    }
+
+    /**
+     * Creates a generator from the system properties vocabulary (default 50000), exponent (default 1.1) and seed
+     * (default 42)
+     * @return generator
+     */
+    public static ZipfCorpus fromProperties() {
+        return new ZipfCorpus(Integer.getInteger("vocabulary", 50_000),
+                Double.parseDouble(System.getProperty("exponent", "1.1")), Long.getLong("seed", 42));
+    }
+
+    /**
+     * Returns the distinct words, most frequent first
+     * @return vocabulary
+     */
+    public String[] vocabulary() {
+        return vocabulary.clone();
+    }
+
+    /**
+     * Draws the next word
+     * @return word
+     */
+    public String next() {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        return vocabulary[Math.min(rank < 0 ? -rank - 1 : rank, vocabulary.length - 1)];
+    }
+
+    /**
+     * Draws the given number of words as lines of text
+     * @param words number of words
+     * @return lines
+     */
+    public String[] lines(int words) {
+        String[] lines = new String[(words + WORDS_PER_LINE - 1) / WORDS_PER_LINE];
+        StringBuilder line = new StringBuilder();
+        for(int i = 0; i < lines.length; i++) {
+            line.setLength(0);
+            for(int j = 0; j < WORDS_PER_LINE && i * WORDS_PER_LINE + j < words; j++) {
+                String word = next();
+                if(j == 0)
+                    line.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+                else
+                    line.append(' ').append(word);
+            }
+            lines[i] = line.append('.').toString();
+        }
+        return lines;
+    }
+
+    /**
+     * Draws the given number of words into a text file
+     * @param file path of the file, overwritten if it exists
+     * @param words number of words
+     */
+    public void write(String file, int words) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            for(String line : lines(words)) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Spells a rank with letters, base 26, so that distinct ranks give distinct words
+     * @param rank rank of the word
+     * @return word
+     */
+    private static String word(int rank) {
+        StringBuilder word = new StringBuilder();
+        do {
+            word.append((char) ('a' + rank % 26));
+            rank /= 26;
+        } while(rank > 0);
+        return word.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.err.println("Usage: java ZipfCorpus outputFile [words] [vocabulary] [exponent] [seed]");
+            return;
+        }
+        int words = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int vocabulary = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+        double exponent = args.length > 3 ? Double.parseDouble(args[3]) : 1.1;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        new ZipfCorpus(vocabulary, exponent, seed).write(args[0], words);
+    }
+}